@@ -0,0 +1,57 @@
+package qirkat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of the Board operations on which search spends most of its
+ *  time.  Board caches its legal moves and the squares from which jumps
+ *  are possible, so the benchmarks of move generation discard the cache
+ *  first; otherwise they would measure nothing but the cache.
+ *  @author Mariel Aquino
+ */
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+    /** Generate the legal moves from POS, returning their number. */
+    @Benchmark
+    public int getMoves(Positions pos) {
+        Board board = pos.board();
+        board.invalidate();
+        _moves.clear();
+        board.getMoves(_moves);
+        return _moves.size();
+    }
+
+    /** Determine whether a jump is possible in POS. */
+    @Benchmark
+    public boolean jumpPossible(Positions pos) {
+        Board board = pos.board();
+        board.invalidate();
+        return board.jumpPossible();
+    }
+
+    /** Make and undo each legal move from POS, returning the sum of the
+     *  Zobrist keys of the positions reached. */
+    @Benchmark
+    public long makeMoveUndo(Positions pos) {
+        Board board = pos.board();
+        MoveList moves = pos.moves();
+        long sum = 0;
+        for (int i = 0; i < moves.size(); i += 1) {
+            board.makeMove(moves.get(i));
+            sum += board.key();
+            board.undo();
+        }
+        return sum;
+    }
+
+    /** Return a copy of the board holding POS. */
+    @Benchmark
+    public Object copy(Positions pos) {
+        return new Board(pos.board());
+    }
+
+    /** Buffer for generated moves. */
+    private final MoveList _moves = new MoveList();
+}
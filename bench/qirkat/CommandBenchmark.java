@@ -0,0 +1,26 @@
+package qirkat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of the parsing of commands, which tries the pattern of each
+ *  type of command in turn.
+ *  @author Mariel Aquino
+ */
+@State(Scope.Thread)
+public class CommandBenchmark {
+
+    /** The command parsed: a move (matched late among the types), a
+     *  setting (matched early), and a board description (long). */
+    @Param({ "a1-a3-c3-c5", "time 0.5",
+             "set white wwwww wwwww bb-ww bbbbb bbbbb" })
+    public String command;
+
+    /** Return the parsed command. */
+    @Benchmark
+    public Object parseCommand() {
+        return Command.parseCommand(command);
+    }
+}
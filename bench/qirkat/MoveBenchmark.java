@@ -0,0 +1,41 @@
+package qirkat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/** Benchmarks of the creation of Moves, which are interned: single moves
+ *  come from a table, and multiple jumps from the table of extensions of
+ *  their first jump.
+ *  @author Mariel Aquino
+ */
+@State(Scope.Thread)
+public class MoveBenchmark {
+
+    /** Denotation of the move parsed by parseMove: a single move or a
+     *  triple jump. */
+    @Param({ "c2-c3", "a1-a3-c3-c5" })
+    public String move;
+
+    /** Return the interned single move c2-c3. */
+    @Benchmark
+    public Object moveSingle() {
+        return Move.move('c', '2', 'c', '3');
+    }
+
+    /** Return the interned triple jump a1-a3-c3-c5, built from its last
+     *  jump back, as parseMove builds it. */
+    @Benchmark
+    public Object moveJumps() {
+        Move last = Move.move('c', '3', 'c', '5');
+        Move middle = Move.move('a', '3', 'c', '3', last);
+        return Move.move('a', '1', 'a', '3', middle);
+    }
+
+    /** Return the Move denoted by the parameter. */
+    @Benchmark
+    public Object parseMove() {
+        return Move.parseMove(move);
+    }
+}
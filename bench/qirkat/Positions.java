@@ -0,0 +1,76 @@
+package qirkat;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import static qirkat.PieceColor.*;
+
+/** The positions on which the benchmarks are run, chosen by the
+ *  benchmark parameter "position":
+ *    initial: the initial position, with every piece on the board.
+ *    middle:  a middle game position with both sides' pieces mixed.
+ *    jumps:   a position in which white must jump, and may make
+ *             multiple jumps.
+ *    endgame: a few pieces apiece.
+ *  Each is set up with Board.setPieces on a detached board, so that
+ *  making moves notifies no observers.
+ *  @author Mariel Aquino
+ */
+@State(Scope.Thread)
+public class Positions {
+
+    /** Name of the position to set up (see above). */
+    @Param({ "initial", "middle", "jumps", "endgame" })
+    public String position;
+
+    /** Set up the chosen position. */
+    @Setup
+    public void setUp() {
+        _board = new Board().detachedCopy();
+        _board.setPieces(pieces(position), WHITE);
+        _moves = new MoveList();
+        _board.getMoves(_moves);
+    }
+
+    /** Return the board holding the chosen position. */
+    Board board() {
+        return _board;
+    }
+
+    /** Return the legal moves (packed) from the chosen position. */
+    MoveList moves() {
+        return _moves;
+    }
+
+    /** Return the description, as for Board.setPieces, of the position
+     *  named NAME. */
+    static String pieces(String name) {
+        switch (name) {
+        case "initial":
+            return INITIAL;
+        case "middle":
+            return MIDDLE;
+        case "jumps":
+            return JUMPS;
+        case "endgame":
+            return ENDGAME;
+        default:
+            throw new IllegalArgumentException("unknown position: " + name);
+        }
+    }
+
+    /** The positions, in the form read by Board.setPieces (row 1
+     *  first). */
+    private static final String
+        INITIAL = "wwwww wwwww bb-ww bbbbb bbbbb",
+        MIDDLE = "w-ww- -ww-w bw-b- b-bb- bb-bb",
+        JUMPS = "w-w-- bbbb- --w-- bb-b- -----",
+        ENDGAME = "--w-- -w--- ----- -b-b- ---b-";
+
+    /** The board holding the chosen position. */
+    private Board _board;
+    /** The legal moves from _board. */
+    private MoveList _moves;
+}
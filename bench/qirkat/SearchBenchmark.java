@@ -0,0 +1,60 @@
+package qirkat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import static qirkat.PieceColor.*;
+
+/** Benchmarks of a complete search by an AI to a fixed depth, with time
+ *  enough that the depth, not the clock, ends it.  The transposition
+ *  table is cleared before each search, so that each starts from
+ *  nothing, as the first search of a game does.
+ *  @author Mariel Aquino
+ */
+@State(Scope.Thread)
+public class SearchBenchmark {
+
+    /** The depth (in plies) to which each search is carried. */
+    @Param({ "2", "4", "6" })
+    public int depth;
+
+    /** Size of the transposition table, in megabytes. */
+    @Param({ "16" })
+    public int hash;
+
+    /** Set up an AI that searches to the given depth on one thread. */
+    @Setup
+    public void setUp() {
+        _game = new Game(new Board(), null, new SilentReporter());
+        _game.setMoveTime(MOVE_TIME);
+        _game.execute("threads 1");
+        _game.execute("hash " + hash);
+        _game.execute("depth " + depth);
+        _ai = new AI(_game, WHITE);
+    }
+
+    /** Discard what the last search left in the transposition table. */
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        _game.table().clear();
+    }
+
+    /** Return the move found by searching POS. */
+    @Benchmark
+    public long search(Positions pos) {
+        return _ai.search(pos.board());
+    }
+
+    /** Milliseconds allowed for each search: far more than any depth
+     *  benchmarked takes. */
+    private static final int MOVE_TIME = 3600000;
+
+    /** The game supplying the AI's settings and transposition table. */
+    private Game _game;
+    /** The AI doing the searching. */
+    private AI _ai;
+}
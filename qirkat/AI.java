@@ -1,8 +1,8 @@
 package qirkat;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
-import static qirkat.PieceColor.*;
+import static qirkat.TranspositionTable.*;
 
 /** A Player that computes its own moves.
  *  @author Mariel Aquino
@@ -11,17 +11,74 @@ class AI extends Player {
 
     /**
      * Maximum minimax search depth before going to static evaluation.
+     * Searches stop sooner when they run out of time.
      */
-    private static final int MAX_DEPTH = 3;
+    private static final int MAX_DEPTH = 64;
+    /**
+     * Maximum number of plies from the root of a search, counting those
+     * of the capture sequences searched beyond MAX_DEPTH (each of which
+     * removes at least one of the pieces).
+     */
+    private static final int MAX_PLY = MAX_DEPTH + Move.MAX_INDEX + 1;
+    /**
+     * One less than the number of positions searched between checks of
+     * the time remaining.  Must be one less than a power of 2.
+     */
+    private static final int CHECK_INTERVAL_MASK = (1 << 10) - 1;
+    /**
+     * Number of nanoseconds in a millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000;
+    /**
+     * Ordering scores of the transposition-table move, captures (plus
+     * the number of pieces captured), and the first killer move of a ply
+     * (less one for the second).  History scores of quiet moves are kept
+     * below KILLER_SCORE.
+     */
+    private static final int
+        TT_MOVE_SCORE = 1 << 30,
+        CAPTURE_SCORE = 1 << 29,
+        KILLER_SCORE = 1 << 28;
+    /**
+     * Number of killer moves remembered for each ply.
+     */
+    private static final int NUM_KILLERS = 2;
+    /**
+     * Size of the history table for each color: one entry for each
+     * starting square and direction.
+     */
+    private static final int HISTORY_SIZE =
+        (Move.MAX_INDEX + 1) * Move.NUM_DIRECTIONS;
     /**
      * A position magnitude indicating a win (for white if positive, black
-     * if negative).
+     * if negative).  A win N plies from the position searched has value
+     * WINNING_VALUE - N.
      */
     private static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
+    /**
+     * Least magnitude of a value indicating a win within the plies
+     * searched (plus those to the end of a game found in a tablebase).
+     */
+    private static final int WIN_THRESHOLD =
+        WINNING_VALUE - MAX_PLY - Tablebase.MAX_DISTANCE - 1;
+    /**
+     * Half the width of the first aspiration window around the value of
+     * the previous iteration of a search.
+     */
+    private static final int ASPIRATION_WINDOW = 16;
+    /**
+     * Factor by which an aspiration window widens when the value falls
+     * outside it.
+     */
+    private static final int ASPIRATION_GROWTH = 4;
     /**
      * A magnitude greater than a normal value.
      */
     private static final int INFTY = Integer.MAX_VALUE;
+    /**
+     * Indicates that a value is unknown.
+     */
+    private static final int NO_VALUE = Integer.MIN_VALUE;
 
     /**
      * A new AI for GAME that will play MYCOLOR.
@@ -32,104 +89,790 @@ class AI extends Player {
 
     @Override
     Move myMove() {
-        _lastFoundMove = null;
-        Main.startTiming();
-        Move move = findMove();
-        Main.endTiming();
+        long start = Main.startTiming();
+        Move move = bookMove();
+        if (move == null) {
+            move = findMove();
+        }
+        Main.endTiming(start);
 
-        System.out.println(myColor().toString()
-                + " moves " + move.toString() + ".");
+        game().reportMove("%s moves %s.", myColor(), move);
 
         return move;
     }
 
     /**
      * Return a move for me from the current position, assuming there
-     * is a move.
+     * is a move.  Searches to successively greater depths until the
+     * time allowed for a move by my game runs out, and returns the move
+     * found by the deepest search that was completed.  If my game allows
+     * more than one thread, helper threads search the same position at
+     * the same time (each on its own copy of the board), sharing what
+     * they find through the transposition table, so that the main search
+     * finds more of the positions it needs already evaluated.
+     *
+     * If I have been pondering the current position, the search already
+     * under way continues (now with a deadline) instead.  Afterwards, if
+     * my game allows it, I start pondering the position I expect after
+     * my move and my opponent's reply.
      */
     private Move findMove() {
-        Board b = new Board(board());
-        if (myColor() == WHITE) {
-            findMove(b, MAX_DEPTH, true, 1, -INFTY, INFTY);
+        if (_ponderThread != null && board().equals(_ponderBoard)) {
+            _searchStart = System.nanoTime();
+            _deadline = _searchStart + _budget;
+            _pondering = false;
+            join(_ponderThread);
         } else {
-            findMove(b, MAX_DEPTH, true, -1, -INFTY, INFTY);
+            stopPondering();
+            startSearch(board());
+            deepen();
+        }
+        _ponderThread = null;
+        reportStats();
+        long best = _bestMove;
+        if (game().pondering()) {
+            ponder(best);
+        }
+        return Move.unpack(best);
+    }
+
+    /**
+     * Return the move for the current position in my game's opening
+     * book, or null if there is none (or if it is not legal, as might
+     * happen if another position has the same key).
+     */
+    private Move bookMove() {
+        OpeningBook book = game().book();
+        if (book == null) {
+            return null;
         }
-        return _lastFoundMove;
+        long mov = book.find(board().key());
+        if (mov == Move.NO_MOVE) {
+            return null;
+        }
+        MoveList moves = new MoveList();
+        board().getMoves(moves);
+        if (!moves.contains(mov)) {
+            return null;
+        }
+        stopPondering();
+        return Move.unpack(mov);
     }
 
     /**
-     * The move found by the last call to one of the ...FindMove methods
-     * below.
+     * Return the best move (packed) from the position on BOARD, which
+     * need not be my game's, found by searching for the time allowed by
+     * my game, without consulting the opening book or pondering.
      */
-    private Move _lastFoundMove;
+    long search(Board board) {
+        stopPondering();
+        startSearch(board);
+        deepen();
+        reportStats();
+        return _bestMove;
+    }
 
     /**
-     * Find a move from position BOARD and return its value, recording
-     * the move found in _lastFoundMove iff SAVEMOVE. The move
-     * should have maximal value or have value > BETA if SENSE==1,
-     * and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     * DEPTH levels.  Searching at level 0 simply returns a static estimate
-     * of the board value and does not set _lastMoveFound.
+     * Prepare all searches to search the position on BOARD, starting
+     * now.
      */
-    private int findMove(Board board, int depth, boolean saveMove, int sense,
-                         int alpha, int beta) {
-        int bestMovesOne = -INFTY;
-        int bestMovesNeg = +INFTY;
-        Move best;
-        best = null;
-        ArrayList<Move> moves = board.getMoves();
+    private void startSearch(Board board) {
+        int numThreads = Math.max(1, game().threads());
+        _table = game().table();
+        _table.newSearch();
+        _evaluation = game().evaluation();
+        _tablebase = game().tablebase();
+        _budget = game().moveTime() * NANOS_PER_MILLI;
+        _searchStart = _searchBegun = System.nanoTime();
+        _deadline = _searchStart + _budget;
+        _stopped = false;
+        _mayAbort = false;
+        if (_searches.length != numThreads) {
+            _searches = Arrays.copyOf(_searches, numThreads);
+        }
+        for (int i = 0; i < numThreads; i += 1) {
+            if (_searches[i] == null) {
+                _searches[i] = new Search(i);
+            }
+            _searches[i].setUp(board);
+        }
+    }
 
-        if (depth == 0 || (moves.size() == 0)) {
-            int staticResponse = staticScore(board);
-            return staticResponse;
+    /**
+     * Run the main search to successively greater depths (and the
+     * helpers alongside it) until time runs out (or, while pondering,
+     * until stopped) or the depth limit of my game is reached, setting
+     * _bestMove to the best move found.
+     */
+    private void deepen() {
+        Search main = _searches[0];
+        MoveList moves = main.rootMoves();
+        _bestMove = moves.isEmpty() ? Move.NO_MOVE : moves.get(0);
+        if (moves.size() <= 1) {
+            return;
         }
+        Thread[] helpers = new Thread[_searches.length - 1];
+        for (int i = 0; i < helpers.length; i += 1) {
+            helpers[i] = new Thread(_searches[i + 1]);
+            helpers[i].setDaemon(true);
+            helpers[i].start();
+        }
+        int maxDepth = game().depthLimit() > 0
+            ? Math.min(game().depthLimit(), MAX_DEPTH) : MAX_DEPTH;
+        for (int depth = 1; depth <= maxDepth; depth += 1) {
+            main.search(depth);
+            if (main.aborted()) {
+                break;
+            }
+            _bestMove = main.bestMove();
+            main.stats().completeIteration(depth);
+            _mayAbort = true;
+            if (Math.abs(main.value()) >= WIN_THRESHOLD
+                || (!_pondering
+                    && 2 * (System.nanoTime() - _searchStart) > _budget)) {
+                break;
+            }
+        }
+        _stopped = true;
+        for (Thread helper : helpers) {
+            join(helper);
+        }
+    }
 
-        for (Move m : moves) {
-            boolean undo = board.legalMove(m);
-            board.makeMove(m);
-            int response = findMove(board, depth - 1,
-                    false, -sense, alpha, beta);
-            if (sense == 1) {
-                if (response >= bestMovesOne) {
-                    bestMovesOne = response;
-                    alpha = Math.max(alpha, response);
-                    best = m;
+    /**
+     * Report the statistics of all threads of the last search to Main.
+     */
+    private void reportStats() {
+        SearchStats stats = new SearchStats();
+        for (Search search : _searches) {
+            stats.add(search.stats());
+        }
+        stats.setTime(System.nanoTime() - _searchBegun);
+        Main.reportSearch(stats);
+    }
+
+    /**
+     * Start searching, in the background, the position I expect after
+     * my move MOV (packed) and my opponent's reply: the reply recorded
+     * as best in the transposition table, if there is one.
+     */
+    private void ponder(long mov) {
+        Board board = board().detachedCopy();
+        board.makeMove(mov);
+        if (board.gameOver() || !_table.find(board.key(), _entry)) {
+            return;
+        }
+        MoveList replies = new MoveList();
+        board.getMoves(replies);
+        if (!replies.contains(_entry[TranspositionTable.MOVE])) {
+            return;
+        }
+        board.makeMove(_entry[TranspositionTable.MOVE]);
+        if (board.gameOver()) {
+            return;
+        }
+        _ponderBoard = board;
+        _pondering = true;
+        startSearch(board);
+        _ponderThread = new Thread(this::deepen);
+        _ponderThread.setDaemon(true);
+        _ponderThread.start();
+    }
+
+    /**
+     * Abandon any search I am doing in the background.
+     */
+    private void stopPondering() {
+        if (_ponderThread != null) {
+            _stopped = true;
+            join(_ponderThread);
+            _ponderThread = null;
+            _pondering = false;
+        }
+    }
+
+    @Override
+    void endGame() {
+        stopPondering();
+    }
+
+    /**
+     * Wait for THREAD to finish.
+     */
+    private static void join(Thread thread) {
+        while (true) {
+            try {
+                thread.join();
+                return;
+            } catch (InterruptedException excp) {
+                /* Keep waiting: searches stop promptly. */
+            }
+        }
+    }
+
+    /**
+     * The thread running the main search in the background while I
+     * ponder, or null if I am not pondering.
+     */
+    private Thread _ponderThread;
+
+    /**
+     * The position being searched by _ponderThread.
+     */
+    private Board _ponderBoard;
+
+    /**
+     * True while the search running in the background is for a position
+     * that has not yet arisen, and so has no deadline.
+     */
+    private volatile boolean _pondering;
+
+    /**
+     * Buffer for entries found in _table.
+     */
+    private final long[] _entry = new long[ENTRY_SIZE];
+
+    /**
+     * The best move found by the last (or current) main search, packed.
+     */
+    private long _bestMove;
+
+    /**
+     * Nanoseconds allowed for each of my moves.
+     */
+    private long _budget;
+
+    /**
+     * The value of System.nanoTime() when the current search started (or,
+     * for a search begun while pondering, when its position arose).
+     */
+    private volatile long _searchStart;
+
+    /**
+     * The value of System.nanoTime() when the current search started,
+     * even if that was while pondering.
+     */
+    private long _searchBegun;
+
+    /**
+     * Table of positions searched, shared by all my searches and with
+     * other searches in my game.
+     */
+    private TranspositionTable _table;
+
+    /**
+     * The static evaluation used by all my searches.
+     */
+    private Evaluation _evaluation;
+
+    /**
+     * The endgame tablebase consulted by all my searches, or null.
+     */
+    private Tablebase _tablebase;
+
+    /**
+     * The value of System.nanoTime() after which the current search
+     * should be abandoned.
+     */
+    private volatile long _deadline;
+
+    /**
+     * True iff the main search may be abandoned when it passes _deadline
+     * (false until it has found some move).
+     */
+    private boolean _mayAbort;
+
+    /**
+     * Set true when all current searches are to stop, abandoning any
+     * iteration in progress.
+     */
+    private volatile boolean _stopped;
+
+    /**
+     * The searches run in parallel for each move.  Search #0 is the main
+     * one, whose results are used; the others are helpers.
+     */
+    private Search[] _searches = new Search[0];
+
+    /** The state of one thread of a search for a move. */
+    private class Search implements Runnable {
+
+        /**
+         * A search that is the main search iff ID is 0, and otherwise is
+         * helper #ID.
+         */
+        Search(int id) {
+            _id = id;
+            for (int d = 0; d <= MAX_PLY; d += 1) {
+                _moves[d] = new MoveList();
+                _scores[d] = new int[0];
+            }
+        }
+
+        /**
+         * Prepare to search from the position on BOARD: copy it, forget
+         * the killers, which belong to particular positions, and halve
+         * the history scores, so that recent experience counts for more.
+         */
+        void setUp(Board board) {
+            _board = board.detachedCopy();
+            _stats.clear();
+            _aborted = false;
+            _lastFoundMove = Move.NO_MOVE;
+            _value = 0;
+            for (long[] killers : _killers) {
+                Arrays.fill(killers, Move.NO_MOVE);
+            }
+            for (int[] history : _history) {
+                for (int k = 0; k < history.length; k += 1) {
+                    history[k] /= 2;
                 }
-            } else {
-                if (response <= bestMovesNeg) {
-                    bestMovesNeg = response;
-                    beta = Math.min(beta, response);
+            }
+        }
+
+        /**
+         * Return the legal moves from the position being searched.
+         */
+        MoveList rootMoves() {
+            MoveList moves = _moves[0];
+            moves.clear();
+            _board.getMoves(moves);
+            return moves;
+        }
+
+        /**
+         * Search the position to DEPTH.  Afterwards, bestMove() is the
+         * best move found and value() its value, unless aborted().
+         * After the first iteration, the search starts with a narrow
+         * window around the value found by the last one, widening it
+         * as needed.
+         */
+        void search(int depth) {
+            if (depth == 1 || Math.abs(_value) >= WIN_THRESHOLD) {
+                _value = findMove(_board, depth, 0, -INFTY, INFTY);
+                return;
+            }
+            long delta = ASPIRATION_WINDOW;
+            long alpha = _value - delta, beta = _value + delta;
+            while (true) {
+                alpha = Math.max(alpha, -INFTY);
+                beta = Math.min(beta, INFTY);
+                int value = findMove(_board, depth, 0,
+                                     (int) alpha, (int) beta);
+                if (_aborted) {
+                    return;
+                }
+                delta *= ASPIRATION_GROWTH;
+                if (value <= alpha && alpha > -INFTY) {
+                    alpha = value - delta;
+                } else if (value >= beta && beta < INFTY) {
+                    beta = value + delta;
+                } else {
+                    _value = value;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Return the counts of my work since the last setUp.
+         */
+        SearchStats stats() {
+            return _stats;
+        }
+
+        /**
+         * Return the best move (packed) found by the last search.
+         */
+        long bestMove() {
+            return _lastFoundMove;
+        }
+
+        /**
+         * Return the value of the position, to the player to move, found
+         * by the last search.
+         */
+        int value() {
+            return _value;
+        }
+
+        /**
+         * Return true iff the last search was abandoned before it
+         * finished.
+         */
+        boolean aborted() {
+            return _aborted;
+        }
+
+        /**
+         * Search as a helper: repeatedly and to increasing depths until
+         * the main search stops.  Odd-numbered helpers start a ply
+         * deeper than the others, so that the threads spread out over
+         * more of the tree.
+         */
+        @Override
+        public void run() {
+            for (int depth = 1 + _id % 2; depth <= MAX_DEPTH && !_stopped;
+                 depth += 1) {
+                search(depth);
+            }
+        }
+
+        /**
+         * Find a move from position BOARD, PLY moves from the root, and
+         * return its value to the player to move, searching up to DEPTH
+         * levels.  A value <= ALPHA is only an upper bound on the true
+         * value, and one >= BETA only a lower bound.  At the root,
+         * records the move found in _lastFoundMove.  At level 0, the
+         * search continues with quiesce.
+         *
+         * After the first move of each position, which is assumed to be
+         * the best, the others are searched with a null window just
+         * above ALPHA, which only shows that they are no better, and are
+         * searched again with the full window only if they are better.
+         *
+         * Results are recorded in and (except at the root) taken from
+         * _table.  Positions found in _tablebase (except the root) are
+         * not searched at all.  Sets _aborted and returns at once if the
+         * searches are stopped (which the main search does itself on
+         * passing _deadline).
+         */
+        private int findMove(Board board, int depth, int ply,
+                             int alpha, int beta) {
+            if (depth == 0) {
+                return quiesce(board, ply, alpha, beta);
+            }
+            if (visit()) {
+                return 0;
+            }
+            if (ply > 0) {
+                int known = probe(board, ply);
+                if (known != NO_VALUE) {
+                    return known;
+                }
+            }
+
+            long key = board.key();
+            int alpha0 = alpha;
+            boolean found = _table.find(key, _entry);
+            _stats.countProbe(found);
+            _stats.reachPly(ply);
+            long hashMove = found ? _entry[MOVE] : Move.NO_MOVE;
+            if (found && ply > 0 && depth(_entry[DATA]) >= depth) {
+                int score = fromTable(score(_entry[DATA]), ply);
+                switch (bound(_entry[DATA])) {
+                case LOWER:
+                    alpha = Math.max(alpha, score);
+                    break;
+                case UPPER:
+                    beta = Math.min(beta, score);
+                    break;
+                default:
+                    return score;
+                }
+                if (beta <= alpha) {
+                    return score;
+                }
+            }
+
+            MoveList moves = _moves[ply];
+            moves.clear();
+            board.getMoves(moves);
+            if (moves.isEmpty()) {
+                return ply - WINNING_VALUE;
+            }
+            PieceColor who = board.whoseMove();
+            int[] scores = scoreMoves(moves, hashMove, ply, who);
+
+            int value = -INFTY;
+            long best = Move.NO_MOVE;
+            for (int i = 0; i < moves.size(); i += 1) {
+                long m = nextMove(moves, scores, i);
+                board.makeMove(m);
+                int response;
+                if (i == 0) {
+                    response = -findMove(board, depth - 1, ply + 1,
+                                         -beta, -alpha);
+                } else {
+                    response = -findMove(board, depth - 1, ply + 1,
+                                         -alpha - 1, -alpha);
+                    if (response > alpha && response < beta) {
+                        response = -findMove(board, depth - 1, ply + 1,
+                                             -beta, -alpha);
+                    }
+                }
+                board.undo();
+                if (_aborted) {
+                    return 0;
+                }
+                if (response > value) {
+                    value = response;
                     best = m;
+                    alpha = Math.max(alpha, response);
+                }
+                if (beta <= alpha) {
+                    _stats.countCutoff(i == 0);
+                    if (!Move.packedIsJump(m)) {
+                        recordCutoff(m, ply, depth, who);
+                    }
+                    break;
                 }
             }
-            if (undo) {
+            if (ply == 0) {
+                _lastFoundMove = best;
+            }
+
+            int bound;
+            if (value <= alpha0) {
+                bound = UPPER;
+            } else if (value >= beta) {
+                bound = LOWER;
+            } else {
+                bound = EXACT;
+            }
+            _table.store(key, depth, toTable(value, ply), bound, best);
+            return value;
+        }
+
+        /**
+         * Return the value to the player to move of BOARD, PLY moves from
+         * the root, as for findMove, but searching only captures.  A
+         * position in which the player to move has no moves is lost, as
+         * in findMove.  Any other quiet position (one where the player to
+         * move cannot capture) is given its static value, on the
+         * assumption that the player could at least maintain it.  Since
+         * captures are compulsory, there is no such assumption in a
+         * position with captures, all of which are searched until the
+         * position becomes quiet.  This avoids misjudging a position just
+         * before a capture or an exchange.
+         */
+        private int quiesce(Board board, int ply, int alpha, int beta) {
+            if (visit()) {
+                return 0;
+            }
+            _stats.countQuiescenceNode();
+            _stats.reachPly(ply);
+            int known = probe(board, ply);
+            if (known != NO_VALUE) {
+                return known;
+            }
+            if (board.gameOver()) {
+                return ply - WINNING_VALUE;
+            }
+            if (ply >= MAX_PLY || !board.jumpPossible()) {
+                return evaluate(board);
+            }
+            MoveList moves = _moves[ply];
+            moves.clear();
+            board.getMoves(moves);
+            int[] scores = scoreMoves(moves, Move.NO_MOVE, ply,
+                                      board.whoseMove());
+            int value = -INFTY;
+            for (int i = 0; i < moves.size(); i += 1) {
+                board.makeMove(nextMove(moves, scores, i));
+                int response = -quiesce(board, ply + 1, -beta, -alpha);
                 board.undo();
+                if (_aborted) {
+                    return 0;
+                }
+                value = Math.max(value, response);
+                alpha = Math.max(alpha, response);
+                if (beta <= alpha) {
+                    break;
+                }
             }
-            if (beta <= alpha) {
-                break;
+            return value;
+        }
+
+        /**
+         * Count a visit to a new position, and return true iff my search
+         * has been abandoned (in which case it sets _aborted).  The main
+         * search checks the time every so often, and stops all searches
+         * once it has passed _deadline.
+         */
+        private boolean visit() {
+            _stats.countNode();
+            if ((_stats.nodes() & CHECK_INTERVAL_MASK) == 0
+                && _id == 0 && _mayAbort
+                && !_pondering && System.nanoTime() - _deadline > 0) {
+                _stopped = true;
             }
+            if (_stopped) {
+                _aborted = true;
+            }
+            return _aborted;
         }
-        if (saveMove) {
-            _lastFoundMove = best;
+
+        /**
+         * Return the value to the player to move of BOARD, PLY moves from
+         * the root, as recorded in _tablebase, or NO_VALUE if it is not
+         * recorded there.
+         */
+        private int probe(Board board, int ply) {
+            if (_tablebase == null) {
+                return NO_VALUE;
+            }
+            int plies = _tablebase.probe(board);
+            if (plies < 0) {
+                return NO_VALUE;
+            }
+            _stats.countTablebaseHit();
+            int value = WINNING_VALUE - ply - plies;
+            return plies % 2 == 1 ? value : -value;
         }
 
-        if (sense == 1) {
-            return bestMovesOne;
-        } else {
-            return bestMovesNeg;
+        /**
+         * Return the static value of BOARD to the player to move.
+         */
+        private int evaluate(Board board) {
+            return _evaluation.score(board);
         }
+
+        /**
+         * Return the ordering scores of MOVES, the moves from a position at
+         * PLY from the root in which WHO is to move, in an array whose first
+         * MOVES.size() elements correspond to MOVES.  HASHMOVE is the best
+         * move recorded for the position in the transposition table, if any.
+         */
+        private int[] scoreMoves(MoveList moves, long hashMove, int ply,
+                                 PieceColor who) {
+            int[] scores = _scores[ply];
+            if (scores.length < moves.size()) {
+                scores = _scores[ply] = new int[2 * moves.size()];
+            }
+            long[] killers = _killers[ply];
+            int[] history = _history[who.ordinal()];
+            for (int i = 0; i < moves.size(); i += 1) {
+                long m = moves.get(i);
+                if (m == hashMove) {
+                    scores[i] = TT_MOVE_SCORE;
+                } else if (Move.packedIsJump(m)) {
+                    scores[i] = CAPTURE_SCORE + Move.packedLegs(m);
+                } else if (m == killers[0]) {
+                    scores[i] = KILLER_SCORE;
+                } else if (m == killers[1]) {
+                    scores[i] = KILLER_SCORE - 1;
+                } else {
+                    scores[i] = history[historyIndex(m)];
+                }
+            }
+            return scores;
+        }
+
+        /**
+         * Return the move with the highest ordering score among those at
+         * positions I and beyond in MOVES, whose scores are in SCORES, after
+         * swapping it (and its score) into position I.  Selecting moves one
+         * at a time, rather than sorting them all, saves effort when an
+         * early move causes a cutoff.
+         */
+        private long nextMove(MoveList moves, int[] scores, int i) {
+            int best = i;
+            for (int j = i + 1; j < moves.size(); j += 1) {
+                if (scores[j] > scores[best]) {
+                    best = j;
+                }
+            }
+            if (best != i) {
+                moves.swap(i, best);
+                int tmp = scores[i];
+                scores[i] = scores[best];
+                scores[best] = tmp;
+            }
+            return moves.get(i);
+        }
+
+        /**
+         * Record that the quiet move MOV by WHO, at PLY from the root and
+         * with DEPTH remaining, caused a cutoff: make it the first killer
+         * move at PLY, and raise its history score.
+         */
+        private void recordCutoff(long mov, int ply, int depth,
+                                  PieceColor who) {
+            long[] killers = _killers[ply];
+            if (killers[0] != mov) {
+                killers[1] = killers[0];
+                killers[0] = mov;
+            }
+            int[] history = _history[who.ordinal()];
+            int k = historyIndex(mov);
+            history[k] = Math.min(history[k] + depth * depth,
+                                  KILLER_SCORE - 2);
+        }
+
+        /** Move lists for the searches at each depth. */
+        private final MoveList[] _moves = new MoveList[MAX_PLY + 1];
+
+        /** Ordering scores of the moves at each ply of the search. */
+        private final int[][] _scores = new int[MAX_PLY + 1][];
+
+        /** Killer moves (packed): the quiet moves that most recently caused
+         *  cutoffs at each ply of the search, most recent first. */
+        private final long[][] _killers = new long[MAX_PLY + 1][NUM_KILLERS];
+
+        /** History scores of quiet moves for each color, indexed by
+         *  historyIndex and raised each time the move causes a cutoff. */
+        private final int[][] _history =
+            new int[PieceColor.values().length][HISTORY_SIZE];
+
+        /** Buffer for entries found in _table. */
+        private final long[] _entry = new long[ENTRY_SIZE];
+
+        /** My copy of the board being searched. */
+        private Board _board;
+
+        /** 0 if I am the main search; otherwise my number as a helper. */
+        private final int _id;
+
+        /** The move found by the last call to findMove with SAVEMOVE,
+         *  in packed form. */
+        private long _lastFoundMove;
+
+        /** True iff my current search has been abandoned, in which case the
+         *  values returned by findMove are meaningless. */
+        private boolean _aborted;
+
+        /** Counts of the work done by my current search. */
+        private final SearchStats _stats = new SearchStats();
+
+        /** Value to the player to move of the position being searched,
+         *  found by the last completed iteration of my search. */
+        private int _value;
     }
 
     /**
-     * Return a heuristic value for BOARD.
+     * Return the value VALUE, found at PLY from the root of a search,
+     * in the form stored in a transposition table: with wins measured
+     * from the position stored rather than the root.
      */
-    private int staticScore(Board board) {
-        int myScore = 0;
-        for (int k = 0; k < 5 * 5; k += 1) {
-            if (board.get(k).equals(myColor())) {
-                myScore += 1;
-            }
+    private static int toTable(int value, int ply) {
+        if (value >= WIN_THRESHOLD) {
+            return value + ply;
+        } else if (value <= -WIN_THRESHOLD) {
+            return value - ply;
         }
-        return myScore;
+        return value;
+    }
+
+    /**
+     * Return the value found at PLY from the root of a search, given the
+     * value VALUE stored in a transposition table.  The inverse of
+     * toTable.
+     */
+    private static int fromTable(int value, int ply) {
+        if (value >= WIN_THRESHOLD) {
+            return value - ply;
+        } else if (value <= -WIN_THRESHOLD) {
+            return value + ply;
+        }
+        return value;
+    }
+
+    /**
+     * Return the index in the history tables of the quiet move MOV.
+     */
+    private static int historyIndex(long mov) {
+        return Move.packedFrom(mov) * Move.NUM_DIRECTIONS
+            + Move.packedDirection(mov, 0);
     }
 }
@@ -5,10 +5,12 @@ import java.util.ArrayList;
 import java.util.Formatter;
 import java.util.Observable;
 import java.util.Observer;
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.Random;
 
 import static qirkat.PieceColor.*;
 import static qirkat.Move.*;
+import static qirkat.Feature.*;
 
 /** A Qirkat board.   The squares are labeled by column (a char value between
  *  'a' and 'e') and row (a char value between '1' and '5'.
@@ -18,26 +20,44 @@ import static qirkat.Move.*;
  *  number of the square in row-major order (with row 0 being the bottom row)
  *  counting from 0).
  *
+ *  The contents of the board are kept as four 25-bit masks, in which bit K
+ *  describes the square with linearized index K: one mask each for the
+ *  white and black pieces, and one each for the pieces that may not
+ *  currently move left or right.
+ *
  *  Moves on this board are denoted by Moves.
  *  @author Mariel Aquino
  */
 class Board extends Observable {
-    /** A data structure to store the PieceColor objects. */
-    private PieceColor[] playBoard;
-    /** Where we store past moves for undo. */
-    private Stack<PieceColor[]> undoStore = new Stack<>();
-    /** Array of booleans for right movement. */
-    private boolean[] cantRightMove = new boolean[5 * 5];
-    /** Array of booleans for left movement. */
-    private boolean[] cantLeftMove = new boolean[5 * 5];
+    /** Squares holding white pieces. */
+    private int _white;
+    /** Squares holding black pieces. */
+    private int _black;
+    /** Squares whose pieces may not make a horizontal move left. */
+    private int _leftLocked;
+    /** Squares whose pieces may not make a horizontal move right. */
+    private int _rightLocked;
+    /** Log of the changes made by past moves, for undo.  Each record
+     *  occupies UNDO_RECORD_SIZE consecutive entries: the XOR differences
+     *  made to the white, black, left-locked and right-locked masks,
+     *  followed by the side to move and game-over flag before the move. */
+    private int[] _undoLog = new int[INITIAL_UNDO_RECORDS * UNDO_RECORD_SIZE];
+    /** _keyLog[i] is the value of _key before the move recorded by undo
+     *  record #I. */
+    private long[] _keyLog = new long[INITIAL_UNDO_RECORDS];
+    /** Number of records in _undoLog. */
+    private int _undoCount;
+    /** The Zobrist key of the current position: the XOR of the keys in
+     *  PIECE_KEYS, LEFT_LOCK_KEYS and RIGHT_LOCK_KEYS for the occupied
+     *  and locked squares, and of BLACK_TO_MOVE_KEY if black is to move. */
+    private long _key;
+    /** _features[c][f] is the total of Feature #F over the pieces of
+     *  the color with ordinal C. */
+    private final int[][] _features =
+        new int[PIECE_VALUES.length][NUM_FEATURES];
 
     /** A new, cleared board at the start of the game. */
     Board() {
-
-        playBoard = new PieceColor[5 * 5];
-        for (int i = 0; i < playBoard.length; i += 1) {
-            playBoard[i] = WHITE;
-        }
         clear();
     }
 
@@ -48,6 +68,16 @@ class Board extends Observable {
         internalCopy(b);
     }
 
+    /**
+     * Return a copy of me that never notifies observers, suitable for
+     * searching ahead without disturbing any display of the game.
+     */
+    Board detachedCopy() {
+        Board result = new Board(this);
+        result._detached = true;
+        return result;
+    }
+
     /**
      * Return a constant view of me (allows any access method, but no
      * method that modifies it).
@@ -58,30 +88,19 @@ class Board extends Observable {
 
     /**
      * Clear me to my starting state, with pieces in their initial
-     * positions. Lol
+     * positions and no moves to undo.
      */
     void clear() {
         _whoseMove = WHITE;
         _gameOver = false;
-        cantRightMove = new boolean[5 * 5];
-        cantLeftMove = new boolean[5 * 5];
-
-        for (int i = 0; i < 10; i += 1) {
-            playBoard[i] = WHITE;
-        }
-
-        playBoard[13] = WHITE;
-        playBoard[14] = WHITE;
-        playBoard[12] = EMPTY;
-        playBoard[11] = BLACK;
-        playBoard[10] = BLACK;
+        _white = INITIAL_WHITE;
+        _black = INITIAL_BLACK;
+        _leftLocked = _rightLocked = 0;
+        _key = computeKey();
+        _undoCount = 0;
+        computeFeatures();
 
-        for (int i = 15; i < 5 * 5; i += 1) {
-            playBoard[i] = BLACK;
-        }
-
-        setChanged();
-        notifyObservers();
+        changed();
     }
 
     /**
@@ -95,21 +114,16 @@ class Board extends Observable {
      * Copy B into me.
      */
     private void internalCopy(Board b) {
-        this.playBoard = new PieceColor[5 * 5];
-        for (int i = 0; i < b.playBoard.length; i += 1) {
-            this.playBoard[i] = b.playBoard[i];
-        }
+        this._white = b._white;
+        this._black = b._black;
+        this._leftLocked = b._leftLocked;
+        this._rightLocked = b._rightLocked;
         this._gameOver = b._gameOver;
         this._whoseMove = b._whoseMove;
-        for (int i = 0; i < this.cantLeftMove.length; i += 1) {
-            this.cantLeftMove[i] = b.cantLeftMove[i];
-        }
-        for (int i = 0; i < this.cantRightMove.length; i += 1) {
-            this.cantRightMove[i] = b.cantRightMove[i];
-        }
-        this.undoStore = new Stack<PieceColor[]>();
-        setChanged();
-        notifyObservers();
+        this._key = b._key;
+        this._undoCount = 0;
+        computeFeatures();
+        changed();
     }
 
     /**
@@ -118,7 +132,8 @@ class Board extends Observable {
      * These give the contents of the Board in row-major order, starting
      * with the bottom row (row 1) and left column (column a). All squares
      * are initialized to allow horizontal movement in either direction.
-     * NEXTMOVE indicates whose move it is.
+     * NEXTMOVE indicates whose move it is.  There are then no moves to
+     * undo.
      */
     void setPieces(String str, PieceColor nextMove) {
         if (nextMove == EMPTY || nextMove == null) {
@@ -129,7 +144,7 @@ class Board extends Observable {
             throw new IllegalArgumentException("bad board description");
         }
 
-
+        _leftLocked = _rightLocked = 0;
         for (int k = 0; k < str.length(); k += 1) {
             switch (str.charAt(k)) {
             case '-':
@@ -148,8 +163,39 @@ class Board extends Observable {
             }
         }
         _whoseMove = nextMove;
-        setChanged();
-        notifyObservers();
+        _key = computeKey();
+        _undoCount = 0;
+        computeFeatures();
+        changed();
+    }
+
+    /**
+     * Set my contents to white pieces on the squares in mask WHITE, black
+     * pieces on those in BLACK, and pieces that may not move left or right
+     * on those in LEFTLOCKED and RIGHTLOCKED, respectively (bit K of each
+     * mask describing the square with linearized index K).  NEXTMOVE
+     * indicates whose move it is.  The game is over if that player has
+     * no moves, and there are no moves to undo.
+     */
+    void setPosition(int white, int black, int leftLocked, int rightLocked,
+                     PieceColor nextMove) {
+        if (nextMove == EMPTY || nextMove == null) {
+            throw new IllegalArgumentException("bad player color");
+        }
+        if ((white & black) != 0 || ((white | black) & ~ALL_SQUARES) != 0) {
+            throw new IllegalArgumentException("bad board description");
+        }
+        _white = white;
+        _black = black;
+        _leftLocked = leftLocked & (white | black);
+        _rightLocked = rightLocked & (white | black);
+        _whoseMove = nextMove;
+        _key = computeKey();
+        _undoCount = 0;
+        invalidate();
+        _gameOver = !isMove();
+        computeFeatures();
+        changed();
     }
 
     /**
@@ -174,7 +220,13 @@ class Board extends Observable {
      */
     PieceColor get(int k) {
         assert validSquare(k);
-        return playBoard[k];
+        if ((_white & (1 << k)) != 0) {
+            return WHITE;
+        } else if ((_black & (1 << k)) != 0) {
+            return BLACK;
+        } else {
+            return EMPTY;
+        }
     }
 
     /**
@@ -192,7 +244,24 @@ class Board extends Observable {
      */
     private void set(int k, PieceColor v) {
         assert validSquare(k);
-        this.playBoard[k] = v;
+        int sq = 1 << k;
+        _white &= ~sq;
+        _black &= ~sq;
+        if (v == WHITE) {
+            _white |= sq;
+        } else if (v == BLACK) {
+            _black |= sq;
+        }
+    }
+
+    /** Return the mask of squares occupied by pieces of color C. */
+    private int pieces(PieceColor c) {
+        return c == WHITE ? _white : c == BLACK ? _black : empty();
+    }
+
+    /** Return the mask of unoccupied squares. */
+    private int empty() {
+        return ~(_white | _black) & ALL_SQUARES;
     }
 
     /**
@@ -202,16 +271,14 @@ class Board extends Observable {
         if (gameOver()) {
             return false;
         }
-        if (!mov.isJump() && jumpPossible(mov.col0(), mov.row0())) {
+        int from = 1 << mov.fromIndex();
+        if (!mov.isJump() && jumpPossible(mov.fromIndex())) {
             return false;
         }
-        if (_whoseMove == WHITE && mov.row0() == '5' && !mov.isJump()) {
+        if (!mov.isJump() && (from & backRank(_whoseMove)) != 0) {
             return false;
         }
-        if (_whoseMove == BLACK && mov.row0() == '1' && !mov.isJump()) {
-            return false;
-        }
-        if (_whoseMove != playBoard[index(mov.col0(), mov.row0())]) {
+        if ((pieces(_whoseMove) & from) == 0) {
             return false;
         }
         if (_whoseMove == WHITE && mov.row0() > mov.row1() && !mov.isJump()) {
@@ -220,10 +287,10 @@ class Board extends Observable {
         if (_whoseMove == BLACK && mov.row1() > mov.row0() && !mov.isJump()) {
             return false;
         }
-        if (mov.isRightMove() && cantRightMove[index(mov.col0(), mov.row0())]) {
+        if (mov.isRightMove() && (_rightLocked & from) != 0) {
             return false;
         }
-        if (mov.isLeftMove() && cantLeftMove[index(mov.col0(), mov.row0())]) {
+        if (mov.isLeftMove() && (_leftLocked & from) != 0) {
             return false;
         }
         return true;
@@ -244,611 +311,180 @@ class Board extends Observable {
      * Add all legal moves from the current position to MOVES.
      */
     void getMoves(ArrayList<Move> moves) {
-        if (gameOver()) {
-            return;
-        }
-        if (jumpPossible()) {
-            for (int k = 0; k <= MAX_INDEX; k += 1) {
-                getJumps(moves, k);
-            }
-        } else {
-            for (int k = 0; k <= MAX_INDEX; k += 1) {
-                getMoves(moves, k);
-            }
+        cacheMoves();
+        for (int i = 0; i < _moves.size(); i += 1) {
+            moves.add(Move.unpack(_moves.get(i)));
         }
     }
 
     /**
-     * Add all legal non-capturing moves from the position
-     * with linearized index K to MOVES.
+     * Add all legal moves from the current position to MOVES, in packed
+     * form.
      */
-    private void getMoves(ArrayList<Move> moves, int k) {
-        if (colToChar(k) != 'a') {
-            if (playBoard[k - 1] == EMPTY) {
-                if (getLeftCondition(k)) {
-                    getMovesLeft(moves, k);
-                }
-            }
-        }
-        if (rowToChar(k) != '5') {
-            if (playBoard[k + 5] == EMPTY) {
-                if (getUpCondition(k)) {
-                    getMovesUp(moves, k);
-                }
-            }
-        }
-        if (colToChar(k) != 'e') {
-            if (playBoard[k + 1] == EMPTY) {
-                if (getRightCondition(k)) {
-                    getMovesRight(moves, k);
-                }
-            }
-        }
-        if (rowToChar(k) != '1') {
-            if (playBoard[k - 5] == EMPTY) {
-                if (getDownCondition(k)) {
-                    getMovesDown(moves, k);
-                }
-            }
+    void getMoves(MoveList moves) {
+        cacheMoves();
+        moves.addAll(_moves);
+    }
+
+    /** Return the number of sequences of DEPTH legal moves that may be
+     *  played from the current position (the number of leaves of the
+     *  tree of moves of that depth).  Every move counted is made and
+     *  undone, so that the result reflects the speed of both move
+     *  generation and makeMove.  Best done on a detachedCopy. */
+    long perft(int depth) {
+        MoveList[] moves = new MoveList[depth];
+        for (int d = 0; d < depth; d += 1) {
+            moves[d] = new MoveList();
+        }
+        return perft(depth, moves);
+    }
+
+    /** Return perft(DEPTH), using MOVES[d] to hold the moves from the
+     *  positions with D moves remaining, for 0 <= d < DEPTH. */
+    private long perft(int depth, MoveList[] moves) {
+        if (depth == 0) {
+            return 1;
+        }
+        MoveList list = moves[depth - 1];
+        list.clear();
+        getMoves(list);
+        long count = 0;
+        for (int i = 0; i < list.size(); i += 1) {
+            makeMove(list.get(i));
+            count += perft(depth - 1, moves);
+            undo();
         }
-        if (rowToChar(k) != '5' && colToChar(k) != 'e' && k % 2 == 0) {
-            if (playBoard[k + 6] == EMPTY) {
-                if (getDiagRightUpCond(k)) {
-                    getDiagonalRightUp(moves, k);
-                }
-            }
+        return count;
+    }
+
+    /** Make sure that _moves holds the legal moves from the current
+     *  position. */
+    private void cacheMoves() {
+        if (!_movesCached) {
+            _moves.clear();
+            generateMoves(_moves);
+            _movesCached = true;
         }
-        if (rowToChar(k) != '5' && colToChar(k) != 'a' && k % 2 == 0) {
-            if (playBoard[k + 4] == EMPTY) {
-                if (getDiagLeftUpCond(k)) {
-                    getDiagonalLeftUp(moves, k);
-                }
-            }
+    }
+
+    /**
+     * Add all legal moves from the current position to MOVES, without
+     * consulting the cache.
+     */
+    private void generateMoves(MoveList moves) {
+        if (gameOver()) {
+            return;
         }
-        if (diagRightDownBool(k)) {
-            if (playBoard[k - 4] == EMPTY) {
-                if (legalMove(Move.move(colToChar(k), rowToChar(k),
-                        colToChar(k - 4), rowToChar(k - 4), null))) {
-                    getDiagonalRightDown(moves, k);
+        int jumpers = jumpers();
+        if (jumpers != 0) {
+            for (int k = 0; k <= MAX_INDEX; k += 1) {
+                if ((jumpers & (1 << k)) != 0) {
+                    findJumps(moves, packedJump(k), k,
+                              pieces(_whoseMove.opposite()),
+                              empty() | (1 << k));
                 }
             }
-        }
-        if (diagLeftDownBool(k)) {
-            if (playBoard[k - 6] == EMPTY) {
-                if (legalMove(Move.move(colToChar(k), rowToChar(k),
-                        colToChar(k - 6), rowToChar(k - 6), null))) {
-                    getDiagonalLeftDown(moves, k);
+        } else {
+            int movers = pieces(_whoseMove);
+            for (int k = 0; k <= MAX_INDEX; k += 1) {
+                if ((movers & (1 << k)) != 0) {
+                    getMoves(moves, k);
                 }
             }
         }
     }
-    /** Boolean helper.
-     * @param k as the int
-     * @return a boolean
-     */
-    private boolean diagRightDownBool(int k) {
-        return rowToChar(k) != '1' && colToChar(k) != 'e' && k % 2 == 0;
-    }
-    /** Boolean helper.
-     * @param k as the int
-     * @return a boolean
-     */
-    private boolean diagLeftDownBool(int k) {
-        return rowToChar(k) != '1' && colToChar(k) != 'a' && k % 2 == 0;
-    }
-    /** Move adding helper.
-     * @param moves as the arraylist
-     * @param k as integer
-     */
-    private void getMovesLeft(ArrayList<Move> moves, int k) {
-        moves.add(Move.move(colToChar(k), rowToChar(k),
-                colToChar(k - 1), rowToChar(k), null));
-    }
 
-    /** Boolean helper.
-     * @param k as the int
-     * @return a boolean
-     */
-    private boolean getLeftCondition(int k) {
-        return legalMove(Move.move(colToChar(k), rowToChar(k),
-                colToChar(k - 1), rowToChar(k), null));
-    }
-
-    /** Move adding helper.
-     * @param moves as the arraylist
-     * @param k as integer
-     */
-    private void getMovesUp(ArrayList<Move> moves, int k) {
-        moves.add(Move.move(colToChar(k), rowToChar(k),
-                colToChar(k), rowToChar(k + 5), null));
-    }
-
-    /** Boolean helper.
-     * @param k as the int
-     * @return a boolean
-     */
-    private boolean getUpCondition(int k) {
-        return legalMove(Move.move(colToChar(k), rowToChar(k),
-                colToChar(k), rowToChar(k + 5), null));
-    }
-
-    /** Move adding helper.
-     * @param moves as the arraylist
-     * @param k as integer
-     */
-    private void getMovesDown(ArrayList<Move> moves, int k) {
-        moves.add(Move.move(colToChar(k), rowToChar(k),
-                colToChar(k), rowToChar(k - 5), null));
-    }
-    /** Boolean helper.
-     * @param k as the int
-     * @return a boolean
+    /**
+     * Add all legal non-capturing moves from the position
+     * with linearized index K to MOVES, assuming that K holds a piece of
+     * the player to move and that no captures are available.
      */
-    private boolean getDownCondition(int k) {
-        return legalMove(Move.move(colToChar(k), rowToChar(k),
-                colToChar(k), rowToChar(k - 5), null));
+    private void getMoves(MoveList moves, int k) {
+        int side = _whoseMove.ordinal();
+        int[] targets = STEP_TO[side][k];
+        long[] steps = STEP_MOVES[side][k];
+        int open = empty() & ~lockedTargets(k);
+        for (int i = 0; i < targets.length; i += 1) {
+            if ((open & (1 << targets[i])) != 0) {
+                moves.add(steps[i]);
+            }
+        }
     }
 
-    /** Move adding helper.
-     * @param moves as the arraylist
-     * @param k as integer
-     */
-    private void getMovesRight(ArrayList<Move> moves, int k) {
-        moves.add(Move.move(colToChar(k), rowToChar(k),
-                colToChar(k + 1), rowToChar(k), null));
+    /** Return the mask of squares adjacent to linearized index K that
+     *  the piece there may not step to because of a horizontal lock. */
+    private int lockedTargets(int k) {
+        int sq = 1 << k;
+        return ((_leftLocked & sq) >>> 1) | ((_rightLocked & sq) << 1);
     }
 
-    /** Boolean helper.
-     * @param k as the int
-     * @return a boolean
-     */
-    private boolean getRightCondition(int k) {
-        return legalMove(Move.move(colToChar(k), rowToChar(k),
-                colToChar(k + 1), rowToChar(k), null));
+    /** Return the mask of the row that pieces of color C advance
+     *  toward, from which they may make only captures. */
+    private static int backRank(PieceColor c) {
+        return c == WHITE ? ROW_5 : ROW_1;
     }
 
-    /** Move adding helper.
-     * @param moves as the arraylist
-     * @param k as integer
-     */
-    private void getDiagonalRightUp(ArrayList<Move> moves, int k) {
-        moves.add(Move.move(colToChar(k), rowToChar(k),
-                colToChar(k + 6), rowToChar(k + 6), null));
-    }
-    /** Boolean helper.
-     * @param k as the int
-     * @return a boolean
-     */
-    private boolean getDiagRightUpCond(int k) {
-        return legalMove(Move.move(colToChar(k), rowToChar(k),
-                colToChar(k + 6), rowToChar(k + 6), null));
+    /** Return X shifted by S bit positions toward higher indices, or
+     *  toward lower indices if S is negative, restricted to the board. */
+    private static int shift(int x, int s) {
+        return (s >= 0 ? x << s : x >>> -s) & ALL_SQUARES;
     }
 
-    /** Move adding helper.
-     * @param moves as the arraylist
-     * @param k as integer
-     */
-    private void getDiagonalLeftUp(ArrayList<Move> moves, int k) {
-        moves.add(Move.move(colToChar(k), rowToChar(k),
-                colToChar(k + 4), rowToChar(k + 4), null));
-    }
-    /** Boolean helper.
-     * @param k as the int
-     * @return a boolean
-     */
-    private boolean getDiagLeftUpCond(int k) {
-        return legalMove(Move.move(colToChar(k), rowToChar(k),
-                colToChar(k + 4), rowToChar(k + 4), null));
-    }
-    /** Move adding helper.
-     * @param moves as the arraylist
-     * @param k as integer
-     */
-    private void getDiagonalRightDown(ArrayList<Move> moves, int k) {
-        moves.add(Move.move(colToChar(k), rowToChar(k),
-                colToChar(k - 4), rowToChar(k - 4), null));
-    }
-    /** Move adding helper.
-     * @param moves as the arraylist
-     * @param k as integer
-     */
-    private void getDiagonalLeftDown(ArrayList<Move> moves, int k) {
-        moves.add(Move.move(colToChar(k),
-                rowToChar(k), colToChar(k - 6), rowToChar(k - 6), null));
-    }
-
-
-
     /**
      * Take the index, and give me the column.
      * @param k for the integer
      * @return char for modNum
      */
     char colToChar(int k) {
-        int modNum = k % 5;
-        if (modNum == 0) {
-            return 'a';
-        } else if (modNum == 1) {
-            return 'b';
-        } else if (modNum == 2) {
-            return 'c';
-        } else if (modNum == 3) {
-            return 'd';
-        } else if (modNum == 4) {
-            return 'e';
-        } else {
-            return 'f';
-        }
-    }
-
-    /**
-     * Take the index, and gives me the row.
-     * @param k for the integer
-     * @return char for
-     */
-    private char rowToChar(int k) {
-        if (k >= 0 && k <= 4) {
-            return '1';
-        } else if (k >= 5 && k <= 9) {
-            return '2';
-        } else if (k >= 10 && k <= 14) {
-            return '3';
-        } else if (k >= 15 && k <= (10 + 9)) {
-            return '4';
-        } else {
-            return '5';
-        }
-    }
-
-    /**
-     * Add all legal captures from the position with linearized index K
-     * to MOVES.
-     */
-    private void getJumps(ArrayList<Move> moves, int k) {
-        if (leftJCondition(k)) {
-            addDirectionJumps(moves, k, k - 2);
-        }
-        if (rightJCondition(k)) {
-            addDirectionJumps(moves, k, k + 2);
-        }
-        if (upJCondition(k)) {
-            addDirectionJumps(moves, k, k + 10);
-        }
-        if (downJCondition(k)) {
-            addDirectionJumps(moves, k, k - 10);
-        }
-        if (diagJRightUpCond(k)) {
-            addDirectionJumps(moves, k, k + 12);
-        }
-        if (diagJRightDownCond(k)) {
-            addDirectionJumps(moves, k, k - 8);
-        }
-        if (diagJLeftUpCond(k)) {
-            addDirectionJumps(moves, k, k + 8);
-        }
-        if (diagJLeftDownCond(k)) {
-            addDirectionJumps(moves, k, k - 12);
-        }
-    }
-
-    /** An adding directional jumps helper.
-     * @param moves is an arraylist
-     * @param k is an integer
-     * @param adj is an adjusted integer
-     */
-    private void addDirectionJumps(ArrayList<Move> moves, int k, int adj) {
-        Move m = Move.move(colToChar(k), rowToChar(k),
-                colToChar(adj), rowToChar(adj));
-        ArrayList<Move> helper;
-        ArrayList<Integer> usedStart = new ArrayList<Integer>();
-        usedStart.add(k);
-        helper = jumperHelp(adj, usedStart);
-        if (helper.size() == 0) {
-            moves.add(m);
-        }
-        for (Move x : helper) {
-            moves.add(Move.move(m, x));
-        }
-    }
-    /**
-     * A diagonal jump helper method.
-     * @param k is an integer
-     * @param hasBeen is an arraylist
-     * @return an arraylist
-     */
-    private ArrayList<Move> jumperHelp(int k, ArrayList<Integer> hasBeen) {
-        ArrayList<Move> moves = new ArrayList<>();
-        if (leftJCondition(k)) {
-            Move newFirst = Move.move(colToChar(k), rowToChar(k),
-                    colToChar(k - 2), rowToChar(k - 2), null);
-            makeMove(newFirst);
-            ArrayList<Move> its2 = jumperHelp(k - 2, hasBeen);
-            undo();
-            if (its2.size() == 0) {
-                moves.add(newFirst);
-            }
-            for (Move m : its2) {
-                moves.add(Move.move(newFirst, m));
-            }
-        }
-        if (rightJCondition(k)) {
-            Move newFirst = Move.move(colToChar(k), rowToChar(k),
-                    colToChar(k + 2), rowToChar(k + 2), null);
-            makeMove(newFirst);
-            ArrayList<Move> its2 = jumperHelp(k + 2, hasBeen);
-            undo();
-            if (its2.size() == 0) {
-                moves.add(newFirst);
-            }
-            for (Move m : its2) {
-                moves.add(Move.move(newFirst, m));
+        return col(k);
+    }
+
+    /** Add to MOVES every complete capture sequence that continues the
+     *  packed capture JUMP, whose capturing piece is now on linearized
+     *  index K, given that THEIRS is the mask of the opposing pieces
+     *  still on the board and EMPTY the mask of empty squares (including
+     *  all those the capturing piece has left, since it may return to
+     *  them). */
+    private void findJumps(MoveList moves, long jump, int k, int theirs,
+                           int empty) {
+        int[] over = JUMP_OVER[k], to = JUMP_TO[k], dir = JUMP_DIR[k];
+        boolean extended = false;
+        for (int i = 0; i < over.length; i += 1) {
+            int captured = 1 << over[i], landing = 1 << to[i];
+            if ((theirs & captured) != 0 && (empty & landing) != 0) {
+                extended = true;
+                findJumps(moves, extendJump(jump, dir[i]), to[i],
+                          theirs & ~captured,
+                          (empty | captured | 1 << k) & ~landing);
             }
         }
-        if (upJCondition(k)) {
-            Move newFirst = Move.move(colToChar(k), rowToChar(k),
-                    colToChar(k + 10), rowToChar(k + 10), null);
-            makeMove(newFirst);
-            ArrayList<Move> its2 = jumperHelp(k + 10, hasBeen);
-            undo();
-            if (its2.size() == 0) {
-                moves.add(newFirst);
-            }
-            for (Move m : its2) {
-                moves.add(Move.move(newFirst, m));
-            }
+        if (!extended && packedLegs(jump) > 0) {
+            moves.add(jump);
         }
-        if (downJCondition(k)) {
-            Move newFirst = Move.move(colToChar(k), rowToChar(k),
-                    colToChar(k - 10), rowToChar(k - 10), null);
-            makeMove(newFirst);
-            ArrayList<Move> its2 = jumperHelp(k - 10, hasBeen);
-            undo();
-            if (its2.size() == 0) {
-                moves.add(newFirst);
-            }
-            for (Move m : its2) {
-                moves.add(Move.move(newFirst, m));
-            }
-        }
-        diagJumperHelp(moves, k, hasBeen);
-        return moves;
     }
 
-    /**
-     * A diagonal jump helper method.
-     * @param moves is an arraylist of moves
-     * @param k is an integer
-     * @param hasBeen is an arraylist
-     * @return an arraylist
-     */
-    private ArrayList<Move> diagJumperHelp(ArrayList<Move> moves, int k,
-                                           ArrayList<Integer> hasBeen) {
-        if (diagJRightUpCond(k)) {
-            Move newFirst = Move.move(colToChar(k), rowToChar(k),
-                    colToChar(k + 12), rowToChar(k + 12), null);
-            makeMove(newFirst);
-            ArrayList<Move> its2 = jumperHelp(k + 12, hasBeen);
-            undo();
-            if (its2.size() == 0) {
-                moves.add(newFirst);
-            }
-            for (Move m : its2) {
-                moves.add(Move.move(newFirst, m));
-            }
+    /** Return the mask of squares holding pieces of the player to move
+     *  that have at least one capture available. */
+    private int jumpers() {
+        if (!_jumpersCached) {
+            _jumpers = findJumpers();
+            _jumpersCached = true;
         }
-        if (diagJRightDownCond(k)) {
-            Move newFirst = Move.move(colToChar(k), rowToChar(k),
-                    colToChar(k - 8), rowToChar(k - 8), null);
-            makeMove(newFirst);
-            ArrayList<Move> its2 = jumperHelp(k - 8, hasBeen);
-            undo();
-            if (its2.size() == 0) {
-                moves.add(newFirst);
-            }
-            for (Move m : its2) {
-                moves.add(Move.move(newFirst, m));
-            }
-        }
-        if (diagJLeftUpCond(k)) {
-            Move newFirst = Move.move(colToChar(k), rowToChar(k),
-                    colToChar(k + 8), rowToChar(k + 8), null);
-            makeMove(newFirst);
-            ArrayList<Move> its2 = jumperHelp(k + 8, hasBeen);
-            undo();
-            if (its2.size() == 0) {
-                moves.add(newFirst);
-            }
-            for (Move m : its2) {
-                moves.add(Move.move(newFirst, m));
-            }
-        }
-        if (diagJLeftDownCond(k)) {
-            Move newFirst = Move.move(colToChar(k), rowToChar(k),
-                    colToChar(k - 12), rowToChar(k - 12), null);
-            makeMove(newFirst);
-            ArrayList<Move> its2 = jumperHelp(k - 12, hasBeen);
-            undo();
-            if (its2.size() == 0) {
-                moves.add(newFirst);
-            }
-            for (Move m : its2) {
-                moves.add(Move.move(newFirst, m));
-            }
-        }
-        return moves;
-    }
-    /**
-     * Conditional helper method.
-     * @param k as the integer
-     * @return a boolean for helper
-     */
-    private boolean upJCondition(int k) {
-        char row = rowToChar(k);
-        PieceColor opposite = _whoseMove.opposite();
-        if (row == '4' || row == '5') {
-            return false;
-        }
-        if (playBoard[k] == _whoseMove
-                && playBoard[k + 5] == opposite
-                && playBoard[k + 10] == EMPTY) {
-            return true;
-        }
-        return false;
-    }
-    /**
-     * Conditional helper method.
-     * @param k as the integer
-     * @return a boolean for helper
-     */
-    private boolean downJCondition(int k) {
-        char row = rowToChar(k);
-        PieceColor opposite = _whoseMove.opposite();
-        if (row == '1' || row == '2') {
-            return false;
-        }
-        if (playBoard[k] == _whoseMove
-                && playBoard[k - 5] == opposite
-                && playBoard[k - 10] == EMPTY) {
-            return true;
-        }
-        return false;
-    }
-    /**
-     * Conditional helper method.
-     * @param k as the integer
-     * @return a boolean for helper
-     */
-    private boolean leftJCondition(int k) {
-        char col = colToChar(k);
-        PieceColor opposite = _whoseMove.opposite();
-        if (col == 'a' || col == 'b') {
-            return false;
-        }
-        if (playBoard[k] == _whoseMove
-                && playBoard[k - 1] == opposite
-                && playBoard[k - 2] == EMPTY) {
-            return true;
-        }
-        return false;
-    }
-    /**
-     * Conditional helper method.
-     * @param k as the integer
-     * @return a boolean for helper
-     */
-    private boolean rightJCondition(int k) {
-        char col = colToChar(k);
-        PieceColor opposite = _whoseMove.opposite();
-        if (col == 'd' || col == 'e') {
-            return false;
-        }
-        if (playBoard[k] == _whoseMove
-                && playBoard[k + 1] == opposite
-                && playBoard[k + 2] == EMPTY) {
-            return true;
-        }
-        return false;
-    }
-    /**
-     * Conditional helper method.
-     * @param k as the integer
-     * @return a boolean for helper
-     */
-    private boolean diagJRightUpCond(int k) {
-        char row = rowToChar(k);
-        char col = colToChar(k);
-        PieceColor opposite = _whoseMove.opposite();
-        if (row == '4' || row == '5') {
-            return false;
-        }
-        if (col == 'd' || col == 'e') {
-            return false;
-        }
-        if (k % 2 != 0 && (k + 6) % 2 != 0) {
-            return false;
-        }
-        if (playBoard[k] == _whoseMove
-                && playBoard[k + 6] == opposite
-                && playBoard[k + 12] == EMPTY) {
-            return true;
-        }
-        return false;
-    }
-    /**
-     * Conditional helper method.
-     * @param k as the integer
-     * @return a boolean for helper
-     */
-    private boolean diagJRightDownCond(int k) {
-        char row = rowToChar(k);
-        char col = colToChar(k);
-        PieceColor opposite = _whoseMove.opposite();
-        if (row == '1' || row == '2') {
-            return false;
-        }
-        if (col == 'd' || col == 'e') {
-            return false;
-        }
-        if (k % 2 != 0 && (k - 4) % 2 != 0) {
-            return false;
-        }
-        if (playBoard[k] == _whoseMove
-                && playBoard[k - 4] == opposite
-                && playBoard[k - 8] == EMPTY) {
-            return true;
-        }
-        return false;
-    }
-    /**
-     * Conditional helper method.
-     * @param k as the integer
-     * @return a boolean for helper
-     */
-    private boolean diagJLeftUpCond(int k) {
-        char row = rowToChar(k);
-        char col = colToChar(k);
-        PieceColor opposite = _whoseMove.opposite();
-        if (row == '4' || row == '5') {
-            return false;
-        }
-        if (col == 'a' || col == 'b') {
-            return false;
-        }
-        if (k % 2 != 0 && (k - 4) % 2 != 0) {
-            return false;
-        }
-        if (playBoard[k] == _whoseMove
-                && playBoard[k + 4] == opposite
-                && playBoard[k + 8] == EMPTY) {
-            return true;
-        }
-        return false;
+        return _jumpers;
     }
 
-    /**
-     * Conditional helper method.
-     * @param k as the integer
-     * @return a boolean for helper
-     */
-    private boolean diagJLeftDownCond(int k) {
-        char row = rowToChar(k);
-        char col = colToChar(k);
-        PieceColor opposite = _whoseMove.opposite();
-        if (row == '1' || row == '2') {
-            return false;
-        }
-        if (col == 'a' || col == 'b') {
-            return false;
+    /** Return the mask of squares holding pieces of the player to move
+     *  that have at least one capture available, computed afresh. */
+    private int findJumpers() {
+        int mine = pieces(_whoseMove),
+            theirs = pieces(_whoseMove.opposite()),
+            empty = empty();
+        int result = 0;
+        for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+            result |= JUMP_FROM[d] & shift(theirs, -DELTA[d])
+                & shift(empty, -2 * DELTA[d]);
         }
-        if (k % 2 != 0 && (k - 6) % 2 != 0) {
-            return false;
-        }
-        if (playBoard[k] == _whoseMove
-                && playBoard[k - 6] == opposite
-                && playBoard[k - 12] == EMPTY) {
-            return true;
-        }
-        return false;
+        return mine & result;
     }
 
     /**
@@ -875,103 +511,12 @@ class Board extends Observable {
      * linearized index K.
      */
     boolean jumpPossible(int k) {
-        char col = colToChar(k);
-        char row = rowToChar(k);
-        if (playBoard[k] == _whoseMove) {
-            PieceColor opposite = playBoard[k].opposite();
-            if (leftCondition(col)) {
-                if (playBoard[k - 1] == playBoard[k].opposite()
-                        && playBoard[k - 2] == EMPTY) {
-                    return true;
-                }
-            }
-            if (rightCondition(col)) {
-                if (playBoard[k + 1] == opposite
-                        && playBoard[k + 2] == EMPTY) {
-                    return true;
-                }
-            }
-            if (upCondition(row)) {
-                if (playBoard[k + 5] == opposite
-                        && playBoard[k + 10] == EMPTY) {
-                    return true;
-                }
-            }
-            if (downCondition(row)) {
-                if (playBoard[k - 5] == opposite
-                        && playBoard[k - 10] == EMPTY) {
-                    return true;
-                }
-            }
-            if (upCondition(row) && rightCondition(col)) {
-                if (playBoard[k + 6] == opposite
-                        && playBoard[k + 12] == EMPTY) {
-                    return true;
-                }
-            }
-            if (upCondition(row) && leftCondition(col)) {
-                if (playBoard[k + 4] == opposite && playBoard[k + 8] == EMPTY) {
-                    return true;
-                }
-            }
-            if (leftCondition(col) && downCondition(row)) {
-                if (playBoard[k - 6] == opposite
-                        && playBoard[k - 12] == EMPTY) {
-                    return true;
-                }
-            }
-            if (rightCondition(col) && downCondition(row)) {
-                if (playBoard[k - 4] == opposite
-                        && playBoard[k - 8] == EMPTY) {
-                    return true;
-                }
-            }
-
-        }
-        return false;
-    }
-    /** Creating left condition.
-     * @param col from index
-     * @return boolean
-     */
-    private boolean leftCondition(char col) {
-        return col != 'a' && col != 'b';
-    }
-
-    /** Creating right condition.
-     * @param col from index
-     * @return boolean
-     */
-    private boolean rightCondition(char col) {
-        return col != 'd' && col != 'e';
-    }
-
-    /** Creating up condition.
-     * @param row from index
-     * @return boolean
-     */
-
-    private boolean upCondition(char row) {
-        return row != '4' && row != '5';
-    }
-
-    /** Creating down condition.
-     * @param row from index
-     * @return boolean
-     */
-
-    private boolean downCondition(char row) {
-        return row != '1' && row != '2';
+        return (jumpers() & (1 << k)) != 0;
     }
 
     /** Return true iff a jump is possible from the current board. */
     boolean jumpPossible() {
-        for (int k = 0; k <= MAX_INDEX; k += 1) {
-            if (jumpPossible(k)) {
-                return true;
-            }
-        }
-        return false;
+        return jumpers() != 0;
     }
 
     /** Return the color of the player who has the next move.  The
@@ -998,58 +543,221 @@ class Board extends Observable {
             return;
         }
         assert legalMove(mov);
-        PieceColor[] boardCopy = new PieceColor[5 * 5];
-        for (int i = 0; i < this.playBoard.length; i += 1) {
-            boardCopy[i] = this.playBoard[i];
-        }
-        undoStore.push(boardCopy);
 
+        int from = 1 << mov.fromIndex();
+        int to, captured, leftLock, rightLock;
+        captured = leftLock = rightLock = 0;
         if (!mov.isJump()) {
-            int index1 = index(mov.col0(), mov.row0());
-            int index2 = index(mov.col1(), mov.row1());
+            to = 1 << mov.toIndex();
             if (mov.isLeftMove()) {
-                cantRightMove[index2] = true;
-                cantRightMove[index1] = false;
+                rightLock = to;
             } else if (mov.isRightMove()) {
-                cantLeftMove[index2] = true;
-                cantLeftMove[index1] = false;
-            } else {
-                cantLeftMove[index2] = false;
-                cantRightMove[index2] = false;
+                leftLock = to;
             }
-            playBoard[index2] = playBoard[index1];
-            playBoard[index1] = EMPTY;
-
-        } else if (mov.isJump()) {
-            while (mov != null) {
-                int capIn = index(mov.col0(), mov.row0());
-                int capIn2 = index(mov.col1(), mov.row1());
-                int jumpedIndex = index(mov.jumpedCol(), mov.jumpedRow());
-                playBoard[jumpedIndex] = EMPTY;
-                playBoard[capIn2] = playBoard[capIn];
-                playBoard[capIn] = EMPTY;
-                cantLeftMove[capIn2] = false;
-                cantRightMove[capIn2] = false;
+        } else {
+            do {
+                captured |= 1 << mov.jumpedIndex();
+                to = 1 << mov.toIndex();
                 mov = mov.jumpTail();
-
-
+            } while (mov != null);
+        }
+        makeMove(from, to, captured, leftLock, rightLock);
+    }
+
+    /** Make the packed move MOV on this Board, assuming it is legal (as
+     *  are all moves produced by getMoves). */
+    void makeMove(long mov) {
+        int k = packedFrom(mov), from = 1 << k;
+        int captured, leftLock, rightLock;
+        captured = leftLock = rightLock = 0;
+        if (!packedIsJump(mov)) {
+            int dir = packedDirection(mov, 0);
+            k += DELTA[dir];
+            if (dir == LEFT) {
+                rightLock = 1 << k;
+            } else if (dir == RIGHT) {
+                leftLock = 1 << k;
+            }
+        } else {
+            for (int i = 0, n = packedLegs(mov); i < n; i += 1) {
+                int delta = DELTA[packedDirection(mov, i)];
+                captured |= 1 << (k + delta);
+                k += 2 * delta;
             }
         }
+        makeMove(from, 1 << k, captured, leftLock, rightLock);
+    }
+
+    /** Move the piece of the player to move from the square in mask FROM
+     *  to the one in mask TO, removing the opposing pieces in mask
+     *  CAPTURED, and give the moved piece the locks in LEFTLOCK and
+     *  RIGHTLOCK. */
+    private void makeMove(int from, int to, int captured,
+                          int leftLock, int rightLock) {
+        int vacated = from | captured | to;
+        int white, black;
+        if (_whoseMove == WHITE) {
+            white = (_white & ~from) | to;
+            black = _black & ~(captured | to);
+        } else {
+            black = (_black & ~from) | to;
+            white = _white & ~(captured | to);
+        }
+        leftLock |= _leftLocked & ~vacated;
+        rightLock |= _rightLocked & ~vacated;
+        logChange(white ^ _white, black ^ _black,
+                  leftLock ^ _leftLocked, rightLock ^ _rightLocked);
+        _key ^= keyOf(PIECE_KEYS[WHITE.ordinal()], white ^ _white)
+            ^ keyOf(PIECE_KEYS[BLACK.ordinal()], black ^ _black)
+            ^ keyOf(LEFT_LOCK_KEYS, leftLock ^ _leftLocked)
+            ^ keyOf(RIGHT_LOCK_KEYS, rightLock ^ _rightLocked)
+            ^ BLACK_TO_MOVE_KEY;
+        adjustFeatures(WHITE, white & ~_white, _white & ~white);
+        adjustFeatures(BLACK, black & ~_black, _black & ~black);
+        _white = white;
+        _black = black;
+        _leftLocked = leftLock;
+        _rightLocked = rightLock;
+
         _whoseMove = _whoseMove.opposite();
-        if (!isMove() && !jumpPossible()) {
+        invalidate();
+        if (!isMove()) {
             _gameOver = true;
         }
-        setChanged();
-        notifyObservers();
+        changed();
+    }
+
+    /** Append an undo record for a move that changes the white, black,
+     *  left-locked and right-locked masks by the XOR differences WHITE,
+     *  BLACK, LEFT and RIGHT, made from the current position. */
+    private void logChange(int white, int black, int left, int right) {
+        if (_undoLog.length < (_undoCount + 1) * UNDO_RECORD_SIZE) {
+            _undoLog = Arrays.copyOf(_undoLog, 2 * _undoLog.length);
+            _keyLog = Arrays.copyOf(_keyLog, 2 * _keyLog.length);
+        }
+        _keyLog[_undoCount] = _key;
+        int r = _undoCount * UNDO_RECORD_SIZE;
+        _undoLog[r] = white;
+        _undoLog[r + 1] = black;
+        _undoLog[r + 2] = left;
+        _undoLog[r + 3] = right;
+        _undoLog[r + FLAGS_FIELD] = _whoseMove.ordinal()
+            | (_gameOver ? GAME_OVER_FLAG : 0);
+        _undoCount += 1;
     }
 
     /** Undo the last move, if any. */
     void undo() {
-        this.playBoard = undoStore.pop();
-        _whoseMove = _whoseMove.opposite();
-        _gameOver = false;
-        setChanged();
-        notifyObservers();
+        if (_undoCount == 0) {
+            return;
+        }
+        _undoCount -= 1;
+        int r = _undoCount * UNDO_RECORD_SIZE;
+        int white = _white ^ _undoLog[r], black = _black ^ _undoLog[r + 1];
+        adjustFeatures(WHITE, white & ~_white, _white & ~white);
+        adjustFeatures(BLACK, black & ~_black, _black & ~black);
+        _white = white;
+        _black = black;
+        _leftLocked ^= _undoLog[r + 2];
+        _rightLocked ^= _undoLog[r + 3];
+        int flags = _undoLog[r + FLAGS_FIELD];
+        _whoseMove = PIECE_VALUES[flags & ~GAME_OVER_FLAG];
+        _gameOver = (flags & GAME_OVER_FLAG) != 0;
+        _key = _keyLog[_undoCount];
+        changed();
+    }
+
+    /** Return the Zobrist key of the current position, which is equal for
+     *  equal positions and (almost always) different for different
+     *  ones.  Unlike hashCode, it is updated as moves are made rather
+     *  than computed on demand. */
+    long key() {
+        return _key;
+    }
+
+    /** Return the mask of squares holding pieces of color C (a WHITE or
+     *  BLACK). */
+    int squares(PieceColor c) {
+        return pieces(c);
+    }
+
+    /** Return the mask of squares whose pieces may not move left. */
+    int leftLocked() {
+        return _leftLocked;
+    }
+
+    /** Return the mask of squares whose pieces may not move right. */
+    int rightLocked() {
+        return _rightLocked;
+    }
+
+    /** Return the number of pieces on the board. */
+    int pieceCount() {
+        return Integer.bitCount(_white | _black);
+    }
+
+    /** Return the total of feature F over the pieces of color C. */
+    int feature(PieceColor c, Feature f) {
+        return _features[c.ordinal()][f.ordinal()];
+    }
+
+    /** Return the total of feature #F over the pieces of the player to
+     *  move, less its total over the opponent's pieces. */
+    int featureDifference(int f) {
+        int w = _features[WHITE.ordinal()][f],
+            b = _features[BLACK.ordinal()][f];
+        return _whoseMove == WHITE ? w - b : b - w;
+    }
+
+    /** Compute _features from scratch. */
+    private void computeFeatures() {
+        for (int[] features : _features) {
+            Arrays.fill(features, 0);
+        }
+        adjustFeatures(WHITE, _white, 0);
+        adjustFeatures(BLACK, _black, 0);
+    }
+
+    /** Adjust _features for the arrival of pieces of color C on the
+     *  squares in ADDED and their departure from those in REMOVED. */
+    private void adjustFeatures(PieceColor c, int added, int removed) {
+        int[] features = _features[c.ordinal()];
+        int[][] values = FEATURE_VALUES[c.ordinal()];
+        for (; added != 0; added &= added - 1) {
+            int k = Integer.numberOfTrailingZeros(added);
+            for (int f = 0; f < NUM_FEATURES; f += 1) {
+                features[f] += values[k][f];
+            }
+        }
+        for (; removed != 0; removed &= removed - 1) {
+            int k = Integer.numberOfTrailingZeros(removed);
+            for (int f = 0; f < NUM_FEATURES; f += 1) {
+                features[f] -= values[k][f];
+            }
+        }
+    }
+
+    /** Return the Zobrist key of the current position, computed from
+     *  scratch. */
+    private long computeKey() {
+        long key = keyOf(PIECE_KEYS[WHITE.ordinal()], _white)
+            ^ keyOf(PIECE_KEYS[BLACK.ordinal()], _black)
+            ^ keyOf(LEFT_LOCK_KEYS, _leftLocked)
+            ^ keyOf(RIGHT_LOCK_KEYS, _rightLocked);
+        if (_whoseMove == BLACK) {
+            key ^= BLACK_TO_MOVE_KEY;
+        }
+        return key;
+    }
+
+    /** Return the XOR of KEYS[k] for every square K in SQUARES. */
+    private static long keyOf(long[] keys, int squares) {
+        long result = 0;
+        while (squares != 0) {
+            result ^= keys[Integer.numberOfTrailingZeros(squares)];
+            squares &= squares - 1;
+        }
+        return result;
     }
 
     @Override
@@ -1064,15 +772,7 @@ class Board extends Observable {
         for (char j = '5'; j >= '1'; j -= 1) {
             out.format(" ");
             for (char i = 'a'; i <= 'e'; i += 1) {
-                int indexed = index(i, j);
-                if (playBoard[indexed] == EMPTY) {
-                    out.format(" -");
-                } else if (playBoard[indexed] == BLACK) {
-                    out.format(" b");
-                } else if (playBoard[indexed] == WHITE) {
-                    out.format(" w");
-                }
-
+                out.format(" %s", get(i, j).shortName());
             }
             if (j != '1') {
                 out.format("\n");
@@ -1082,9 +782,69 @@ class Board extends Observable {
         return out.toString();
     }
 
-    /** Return true iff there is a move for the current player. */
+    /** Return true iff there is a move for the current player, ignoring
+     *  whether the game has already been declared over.  Stops at the
+     *  first move found rather than generating them all. */
     private boolean isMove() {
-        return getMoves().size() != 0;
+        if (_movesCached && !_gameOver) {
+            return !_moves.isEmpty();
+        }
+        if (jumpers() != 0) {
+            return true;
+        }
+        int side = _whoseMove.ordinal();
+        int movers = pieces(_whoseMove), empty = empty();
+        while (movers != 0) {
+            int k = Integer.numberOfTrailingZeros(movers);
+            if ((STEP_TARGETS[side][k] & empty & ~lockedTargets(k)) != 0) {
+                return true;
+            }
+            movers &= movers - 1;
+        }
+        return false;
+    }
+
+    /** Discard cached information about my position, so that it is
+     *  computed afresh when next needed. */
+    void invalidate() {
+        _movesCached = _jumpersCached = false;
+    }
+
+    /** Note that my position has changed: discard cached information
+     *  about it and notify my observers, unless I am detached or the
+     *  notification is deferred to the end of the current group of
+     *  changes. */
+    private void changed() {
+        invalidate();
+        if (_detached) {
+            return;
+        }
+        if (_changeDepth > 0) {
+            _changePending = true;
+        } else {
+            setChanged();
+            notifyObservers();
+        }
+    }
+
+    /** Begin a group of changes to me, which my observers see as a single
+     *  change when the matching call to endChanges() arrives.  Groups may
+     *  be nested. */
+    void beginChanges() {
+        _changeDepth += 1;
+    }
+
+    /** End the group of changes begun by the last unmatched call to
+     *  beginChanges(), notifying my observers once if anything changed
+     *  and this ends the outermost group. */
+    void endChanges() {
+        assert _changeDepth > 0;
+        _changeDepth -= 1;
+        if (_changeDepth == 0 && _changePending) {
+            _changePending = false;
+            setChanged();
+            notifyObservers();
+        }
     }
 
 
@@ -1094,20 +854,216 @@ class Board extends Observable {
     /** Set true when game ends. */
     private boolean _gameOver;
 
+    /** True iff I never notify observers of changes. */
+    private boolean _detached;
+
+    /** Number of groups of changes begun and not yet ended. */
+    private int _changeDepth;
+
+    /** True iff a change made during the current group of changes has not
+     *  yet been announced to my observers. */
+    private boolean _changePending;
+
+    /** The legal moves from the current position, if _movesCached. */
+    private final MoveList _moves = new MoveList();
+
+    /** True iff _moves holds the moves from the current position. */
+    private boolean _movesCached;
+
+    /** The value of findJumpers() for the current position, if
+     *  _jumpersCached. */
+    private int _jumpers;
+
+    /** True iff _jumpers is valid for the current position. */
+    private boolean _jumpersCached;
+
+
     /** Convenience value giving values of pieces at each ordinal position. */
     static final PieceColor[] PIECE_VALUES = PieceColor.values();
 
-    /** One cannot create arrays of ArrayList<Move>, so we introduce
-     *  a specialized private list type for this purpose. */
-    private static class MoveList extends ArrayList<Move> {
+    /** Number of entries in each record of the undo log. */
+    private static final int UNDO_RECORD_SIZE = 5;
+
+    /** Offset of the flags within an undo record. */
+    private static final int FLAGS_FIELD = 4;
+
+    /** Bit of the flags field of an undo record that is set if the game
+     *  was over before the move. */
+    private static final int GAME_OVER_FLAG = 1 << 2;
+
+    /** Number of undo records for which a new Board has room before its
+     *  log must grow. */
+    private static final int INITIAL_UNDO_RECORDS = 64;
+
+    /** Mask with a bit set for every square on the board. */
+    private static final int ALL_SQUARES = (1 << (SIDE * SIDE)) - 1;
+
+    /** Mask of the bottom row (row 1). */
+    private static final int ROW_1 = (1 << SIDE) - 1;
+
+    /** Mask of the top row (row 5). */
+    private static final int ROW_5 = ROW_1 << (SIDE * (SIDE - 1));
+
+    /** Squares holding white pieces at the start of a game: rows 1 and 2
+     *  and the right half of row 3. */
+    private static final int INITIAL_WHITE =
+        (1 << (2 * SIDE)) - 1 | 1 << index('d', '3') | 1 << index('e', '3');
+
+    /** Squares holding black pieces at the start of a game. */
+    private static final int INITIAL_BLACK =
+        ALL_SQUARES & ~INITIAL_WHITE & ~(1 << index('c', '3'));
+
+    /** The directions (as numbered in Move) of horizontal steps. */
+    private static final int
+        LEFT = direction(-1, 0),
+        RIGHT = direction(1, 0);
+
+    /** For each direction, the squares from which a jump in that
+     *  direction stays on the board (and follows a marked line). */
+    private static final int[] JUMP_FROM = new int[NUM_DIRECTIONS];
+
+    /** STEP_TO[c][k] lists the squares to which a piece of the color
+     *  with ordinal c on linearized index K may take a non-capturing step,
+     *  not counting horizontal locks, in direction order. */
+    private static final int[][][] STEP_TO =
+        new int[PIECE_VALUES.length][MAX_INDEX + 1][];
+
+    /** STEP_TARGETS[c][k] is the mask of the squares in STEP_TO[c][k]. */
+    private static final int[][] STEP_TARGETS =
+        new int[PIECE_VALUES.length][MAX_INDEX + 1];
+
+    /** STEP_MOVES[c][k][i] is the packed move from K to
+     *  STEP_TO[c][k][i]. */
+    private static final long[][][] STEP_MOVES =
+        new long[PIECE_VALUES.length][MAX_INDEX + 1][];
+
+    /** JUMP_OVER[k] lists the squares over which a piece on linearized
+     *  index K may capture, in direction order. */
+    private static final int[][] JUMP_OVER = new int[MAX_INDEX + 1][];
+
+    /** JUMP_TO[k][i] is the landing square of a capture from K over
+     *  JUMP_OVER[k][i]. */
+    private static final int[][] JUMP_TO = new int[MAX_INDEX + 1][];
+
+    /** JUMP_DIR[k][i] is the direction of the jump from K to
+     *  JUMP_TO[k][i]. */
+    private static final int[][] JUMP_DIR = new int[MAX_INDEX + 1][];
+
+    /** FEATURE_VALUES[c][k][f] is the value of Feature #F for a piece of
+     *  the color with ordinal C on linearized index K. */
+    private static final int[][][] FEATURE_VALUES =
+        new int[PIECE_VALUES.length][MAX_INDEX + 1][NUM_FEATURES];
+
+    static {
+        for (PieceColor c : new PieceColor[] { WHITE, BLACK }) {
+            for (int k = 0; k <= MAX_INDEX; k += 1) {
+                for (Feature f : FEATURES) {
+                    FEATURE_VALUES[c.ordinal()][k][f.ordinal()] =
+                        f.value(c, k % SIDE, k / SIDE);
+                }
+            }
+        }
+    }
+
+    /** Seed for the generator of the Zobrist keys, fixed so that keys
+     *  are the same from run to run (and so may be saved in files). */
+    private static final long KEY_SEED = 0x51a7_c0de_2018L;
+
+    /** PIECE_KEYS[c][k] is the Zobrist key of a piece of the color with
+     *  ordinal C on linearized index K. */
+    private static final long[][] PIECE_KEYS =
+        new long[PIECE_VALUES.length][MAX_INDEX + 1];
+
+    /** LEFT_LOCK_KEYS[k] is the Zobrist key of a piece on linearized
+     *  index K that may not move left. */
+    private static final long[] LEFT_LOCK_KEYS = new long[MAX_INDEX + 1];
+
+    /** RIGHT_LOCK_KEYS[k] is the Zobrist key of a piece on linearized
+     *  index K that may not move right. */
+    private static final long[] RIGHT_LOCK_KEYS = new long[MAX_INDEX + 1];
+
+    /** Zobrist key of black's being on move. */
+    private static final long BLACK_TO_MOVE_KEY;
+
+    static {
+        Random keys = new Random(KEY_SEED);
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            PIECE_KEYS[WHITE.ordinal()][k] = keys.nextLong();
+            PIECE_KEYS[BLACK.ordinal()][k] = keys.nextLong();
+            LEFT_LOCK_KEYS[k] = keys.nextLong();
+            RIGHT_LOCK_KEYS[k] = keys.nextLong();
+        }
+        BLACK_TO_MOVE_KEY = keys.nextLong();
+    }
+
+    static {
+        for (int k = 0; k <= MAX_INDEX; k += 1) {
+            ArrayList<Integer> whiteSteps = new ArrayList<>(),
+                blackSteps = new ArrayList<>(),
+                jumps = new ArrayList<>();
+            int c = k % SIDE, r = k / SIDE;
+            for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+                if (DCOL[d] != 0 && DROW[d] != 0 && k % 2 != 0) {
+                    continue;
+                }
+                if (onBoard(c + DCOL[d], r + DROW[d])) {
+                    if (DROW[d] >= 0 && r < SIDE - 1) {
+                        whiteSteps.add(d);
+                    }
+                    if (DROW[d] <= 0 && r > 0) {
+                        blackSteps.add(d);
+                    }
+                }
+                if (onBoard(c + 2 * DCOL[d], r + 2 * DROW[d])) {
+                    JUMP_FROM[d] |= 1 << k;
+                    jumps.add(d);
+                }
+            }
+            setSteps(WHITE, k, whiteSteps);
+            setSteps(BLACK, k, blackSteps);
+            JUMP_OVER[k] = new int[jumps.size()];
+            JUMP_TO[k] = new int[jumps.size()];
+            JUMP_DIR[k] = new int[jumps.size()];
+            for (int i = 0; i < jumps.size(); i += 1) {
+                int d = jumps.get(i);
+                JUMP_OVER[k][i] = k + DELTA[d];
+                JUMP_TO[k][i] = k + 2 * DELTA[d];
+                JUMP_DIR[k][i] = d;
+            }
+        }
+    }
+
+    /** Fill in the STEP_TO, STEP_TARGETS and STEP_MOVES entries for a
+     *  piece of color C on linearized index K from the list of step
+     *  directions DIRS. */
+    private static void setSteps(PieceColor c, int k,
+                                 ArrayList<Integer> dirs) {
+        int side = c.ordinal();
+        STEP_TO[side][k] = new int[dirs.size()];
+        STEP_MOVES[side][k] = new long[dirs.size()];
+        for (int i = 0; i < dirs.size(); i += 1) {
+            int to = k + DELTA[dirs.get(i)];
+            STEP_TO[side][k][i] = to;
+            STEP_TARGETS[side][k] |= 1 << to;
+            STEP_MOVES[side][k][i] = packedStep(k, dirs.get(i));
+        }
+    }
+
+    /** Return true iff column C and row R (both numbered from 0) lie on
+     *  the board. */
+    private static boolean onBoard(int c, int r) {
+        return 0 <= c && c < SIDE && 0 <= r && r < SIDE;
     }
 
     @Override
     public boolean equals(Object o) {
         if (o instanceof Board) {
             Board b = (Board) o;
-            return (b.toString().equals(toString())
-                    && _whoseMove == b.whoseMove()
+            return (_key == b._key
+                    && _white == b._white && _black == b._black
+                    && _leftLocked == b._leftLocked
+                    && _rightLocked == b._rightLocked
+                    && _whoseMove == b._whoseMove
                     && _gameOver == b._gameOver);
         } else {
             return false;
@@ -1116,7 +1072,7 @@ class Board extends Observable {
 
     @Override
     public int hashCode() {
-        return 1;
+        return (int) (_key ^ (_key >>> Integer.SIZE));
     }
 
 
@@ -1138,11 +1094,22 @@ class Board extends Observable {
             assert false;
         }
 
+        @Override
+        void setPosition(int white, int black, int leftLocked,
+                         int rightLocked, PieceColor nextMove) {
+            assert false;
+        }
+
         @Override
         void makeMove(Move move) {
             assert false;
         }
 
+        @Override
+        void makeMove(long move) {
+            assert false;
+        }
+
         /** Undo the last move. */
         @Override
         void undo() {
@@ -1151,9 +1118,9 @@ class Board extends Observable {
 
         @Override
         public void update(Observable obs, Object arg) {
+            beginChanges();
             super.copy((Board) obs);
-            setChanged();
-            notifyObservers(arg);
+            endChanges();
         }
     }
 }
@@ -3,6 +3,8 @@ package qirkat;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import static qirkat.PieceColor.*;
+
 /** Tests of the Board class.
  *  @author Mariel Aquino
  */
@@ -55,6 +57,245 @@ public class BoardTest {
         assertEquals("second pass failed to reach same position", b2, b0);
     }
 
+    @Test
+    public void testUndoRestoresState() {
+        Board b0 = new Board();
+        b0.setPieces("--w-- ----- ----- b---- -----", WHITE);
+        b0.makeMove(Move.parseMove("c1-b1"));
+        b0.makeMove(Move.parseMove("a4-a3"));
+        b0.makeMove(Move.parseMove("b1-a1"));
+        b0.undo();
+        assertEquals(WHITE, b0.whoseMove());
+        assertFalse("left lock lost on undo",
+                    b0.legalMove(Move.parseMove("b1-c1")));
+        b0.undo();
+        b0.undo();
+        assertTrue(b0.legalMove(Move.parseMove("c1-d1")));
+        b0.undo();
+        assertEquals("undo of empty history changed the board",
+                     WHITE, b0.get('c', '1'));
+        b0.setPieces("b---- ----- ----- --w-- -----", WHITE);
+        b0.makeMove(Move.parseMove("c4-c5"));
+        assertTrue(b0.gameOver());
+        b0.undo();
+        assertFalse(b0.gameOver());
+        assertEquals(WHITE, b0.whoseMove());
+    }
+
+    @Test
+    public void testHorizontalLock() {
+        Board b0 = new Board();
+        b0.setPieces("--w-- ----- ----- ----- b----", WHITE);
+        b0.makeMove(Move.parseMove("c1-b1"));
+        b0.makeMove(Move.parseMove("a5-a4"));
+        assertFalse("piece moved back right", b0.legalMove(
+                        Move.parseMove("b1-c1")));
+        assertTrue(b0.legalMove(Move.parseMove("b1-a1")));
+        b0.makeMove(Move.parseMove("b1-b2"));
+        b0.makeMove(Move.parseMove("a4-a3"));
+        assertTrue("lock not cleared by forward move",
+                   b0.legalMove(Move.parseMove("b2-c2")));
+    }
+
+    @Test
+    public void testJumpPossible() {
+        Board b0 = new Board();
+        assertFalse(b0.jumpPossible());
+        b0.makeMove(Move.parseMove("d3-c3"));
+        assertTrue(b0.jumpPossible());
+        assertTrue(b0.jumpPossible('b', '3'));
+        assertFalse(b0.jumpPossible('c', '4'));
+        assertFalse(b0.jumpPossible('a', '3'));
+    }
+
+    @Test
+    public void testInitialMoves() {
+        Board b0 = new Board();
+        assertEquals(4, b0.getMoves().size());
+        assertTrue(b0.getMoves().contains(Move.parseMove("b2-c3")));
+        assertTrue(b0.getMoves().contains(Move.parseMove("d3-c3")));
+        b0.setPieces("----- ----- --w-- ----- -----", WHITE);
+        assertEquals("diagonal point with no back moves", 5,
+                     b0.getMoves().size());
+        b0.setPieces("----- ----- ---w- ----- -----", WHITE);
+        assertEquals(3, b0.getMoves().size());
+    }
+
+    @Test
+    public void testMultiJumps() {
+        Board b0 = new Board();
+        b0.setPieces("----- -w--- -bbb- ----- -----", WHITE);
+        java.util.ArrayList<Move> moves = b0.getMoves();
+        assertEquals(2, moves.size());
+        assertTrue(moves.contains(Move.parseMove("b2-b4-d2-d4")));
+        assertTrue(moves.contains(Move.parseMove("b2-d4-d2")));
+        MoveList packed = new MoveList();
+        b0.getMoves(packed);
+        assertEquals(moves.size(), packed.size());
+        for (int i = 0; i < packed.size(); i += 1) {
+            assertEquals(moves.get(i), Move.unpack(packed.get(i)));
+        }
+        b0.makeMove(packed.get(0));
+        assertEquals("  - - - - -\n  - - - w -\n  - - - - -\n"
+                     + "  - - - - -\n  - - - - -", b0.toString());
+        b0.undo();
+        assertEquals("generating jumps changed the board",
+                     "  - - - - -\n  - - - - -\n  - b b b -\n"
+                     + "  - w - - -\n  - - - - -", b0.toString());
+    }
+
+    /** Check that a capture sequence may pass again through squares the
+     *  capturing piece has left, including the one it started from. */
+    @Test
+    public void testRevisitingJumps() {
+        Board b0 = new Board();
+        b0.setPieces("----- ----- ----w --bbb ---b-", WHITE);
+        java.util.ArrayList<Move> moves = b0.getMoves();
+        assertEquals(5, moves.size());
+        assertTrue(moves.contains(Move.parseMove("e3-e5-c3-c5-e5")));
+        assertTrue(moves.contains(Move.parseMove("e3-e5-c5-c3-e5")));
+        assertTrue(moves.contains(Move.parseMove("e3-e5-c5-e3")));
+        assertTrue(moves.contains(Move.parseMove("e3-c5-e5-e3")));
+        assertFalse("capture stopped while it could continue",
+                    moves.contains(Move.parseMove("e3-e5-c3-c5")));
+    }
+
+    @Test
+    public void testNotifications() {
+        Board b0 = new Board();
+        Board view = b0.constantView();
+        int[] count = new int[1];
+        b0.addObserver((obs, arg) -> count[0] += 1);
+        view.addObserver((obs, arg) -> count[0] += 1);
+        b0.makeMove(Move.parseMove("d3-c3"));
+        assertEquals(2, count[0]);
+        assertEquals(b0, view);
+
+        count[0] = 0;
+        b0.beginChanges();
+        b0.clear();
+        b0.setPieces("--w-- ----- ----- ----- --b--", WHITE);
+        assertEquals("notified inside a group of changes", 0, count[0]);
+        b0.endChanges();
+        assertEquals(2, count[0]);
+
+        count[0] = 0;
+        Board search = b0.detachedCopy();
+        search.addObserver((obs, arg) -> count[0] += 1);
+        search.makeMove(Move.parseMove("c1-c2"));
+        search.undo();
+        assertEquals("detached board notified", 0, count[0]);
+    }
+
+    @Test
+    public void testKeys() {
+        Board b0 = new Board(), b1 = new Board();
+        b0.setPieces("w-w-- ----- ----- ----- b-b--", WHITE);
+        b1.copy(b0);
+        long start = b0.key();
+        for (String mov : new String[] { "a1-a2", "a5-a4", "c1-c2", "c5-c4" }) {
+            b0.makeMove(Move.parseMove(mov));
+        }
+        for (String mov : new String[] { "c1-c2", "a5-a4", "a1-a2", "c5-c4" }) {
+            b1.makeMove(Move.parseMove(mov));
+        }
+        assertEquals(b0.key(), b1.key());
+        assertEquals(b0, b1);
+        assertEquals(b0.hashCode(), b1.hashCode());
+
+        Board b2 = new Board();
+        b2.setPieces("----- w-w-- ----- b-b-- -----", WHITE);
+        assertEquals("incremental key differs from fresh one",
+                     b2.key(), b0.key());
+        b2.makeMove(Move.parseMove("a2-b2"));
+        Board b3 = new Board();
+        b3.setPieces("----- -ww-- ----- b-b-- -----", BLACK);
+        assertNotEquals("key ignores locks", b3.key(), b2.key());
+        assertNotEquals(b3, b2);
+
+        for (int i = 0; i < 4; i += 1) {
+            b0.undo();
+        }
+        assertEquals(start, b0.key());
+    }
+
+    /** Check that clear and setPieces discard the moves made before
+     *  them, so that undo cannot apply those moves' changes to the new
+     *  position. */
+    @Test
+    public void testUndoAfterReset() {
+        Board b0 = new Board();
+        makeMoves(b0, GAME1);
+        b0.clear();
+        b0.undo();
+        assertEquals(new Board(), b0);
+        assertEquals(new Board().key(), b0.key());
+
+        makeMoves(b0, GAME1);
+        b0.setPieces("--w-- ----- ----- b---- -----", WHITE);
+        Board fresh = new Board();
+        fresh.setPieces("--w-- ----- ----- b---- -----", WHITE);
+        b0.undo();
+        assertEquals(fresh, b0);
+        assertEquals(fresh.key(), b0.key());
+        assertEquals(fresh.toString(), b0.toString());
+    }
+
+    @Test
+    public void testSetPosition() {
+        Board b0 = new Board();
+        makeMoves(b0, GAME1);
+        int white = 1 << Move.index('c', '3'),
+            black = 1 << Move.index('a', '1');
+        b0.setPosition(white, black, 0, 0, BLACK);
+        assertTrue("black has no moves from its back row", b0.gameOver());
+        b0.undo();
+        assertEquals(BLACK, b0.get('a', '1'));
+        assertEquals(WHITE, b0.get('c', '3'));
+        b0.setPosition(white, black, 0, 0, WHITE);
+        assertFalse(b0.gameOver());
+        b0.makeMove(Move.parseMove("c3-c4"));
+        assertTrue(b0.gameOver());
+        b0.undo();
+        assertFalse(b0.gameOver());
+    }
+
+    @Test
+    public void testPerft() {
+        long[] expected = { 1, 4, 5, 6, 12, 27, 97, 416, 1826 };
+        Board b0 = new Board();
+        for (int depth = 0; depth < expected.length; depth += 1) {
+            assertEquals("wrong count at depth " + depth,
+                         expected[depth], b0.perft(depth));
+        }
+        assertEquals(new Board(), b0);
+    }
+
+    @Test
+    public void testFeatures() {
+        Board b0 = new Board();
+        for (Feature f : Feature.values()) {
+            assertEquals("asymmetric " + f, b0.feature(WHITE, f),
+                         b0.feature(BLACK, f));
+        }
+        assertEquals(12, b0.feature(WHITE, Feature.MATERIAL));
+        makeMoves(b0, GAME1);
+        Board fresh = new Board(b0);
+        for (Feature f : Feature.values()) {
+            assertEquals(fresh.feature(WHITE, f), b0.feature(WHITE, f));
+            assertEquals(fresh.feature(BLACK, f), b0.feature(BLACK, f));
+        }
+        assertEquals(10, b0.feature(WHITE, Feature.MATERIAL));
+        for (int i = 0; i < GAME1.length; i += 1) {
+            b0.undo();
+        }
+        Board initial = new Board();
+        for (Feature f : Feature.values()) {
+            assertEquals(initial.feature(WHITE, f), b0.feature(WHITE, f));
+            assertEquals(initial.feature(BLACK, f), b0.feature(BLACK, f));
+        }
+    }
+
     @Test
     public void testColToChar() {
         Board b0 = new Board();
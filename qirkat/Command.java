@@ -17,14 +17,24 @@ class Command {
     static enum Type {
         /* Start-up state only. */
         AUTO("(?i)auto\\s+(white|black)"),
+        AUTO_ENGINE("(?i)auto\\s+(white|black)\\s+(ai|mcts)"),
         MANUAL("(?i)manual\\s+(white|black)"),
         SEED("seed\\s+(\\d+)"),
+        HASH("hash\\s+(\\d+)"),
+        TIME("time\\s+(\\d+(?:\\.\\d*)?|\\.\\d+)"),
+        THREADS("threads\\s+(\\d+)"),
+        DEPTH("depth\\s+(\\d+)"),
+        WEIGHT("(?i)weight\\s+([a-z]+)\\s+(-?\\d+)"),
+        PONDER("(?i)ponder\\s+(on|off)"),
+        BOOK("book\\s+(\\d+)\\s+(\\S+)"),
         START,
         SETBOARD("(?i)set\\s+(white|black)\\s+((?:[bw-]\\s*){25})"),
         /* Regular moves (set-up or play) */
         PIECEMOVE("([a-e][1-5](?:-[a-e][1-5])+)"),
         /* Valid at any time. */
         LOAD("load\\s+(\\S+)"),
+        PERFT("perft\\s+(\\d+)"),
+        PERFT_DIVIDE("perft-divide\\s+(\\d+)"),
         QUIT, CLEAR, DUMP, HELP,
         /* Special "commands" internally generated. */
         /** Syntax error in command. */
@@ -34,6 +34,9 @@ public class CommandTest {
         checkError("auto green");
         checkError("auto");
         checkError("auto red foo");
+        check("auto white mcts", AUTO_ENGINE, "white", "mcts");
+        check("auto Black AI", AUTO_ENGINE, "Black", "AI");
+        checkError("auto white random");
     }
 
     @Test public void testSEED() {
@@ -43,6 +46,53 @@ public class CommandTest {
         checkError("seed 142 foo");
     }
 
+    @Test public void testHASH() {
+        check("hash 64", HASH, "64");
+        checkError("hash");
+        checkError("hash big");
+    }
+
+    @Test public void testTIME() {
+        check("time 5", TIME, "5");
+        check("time 0.25", TIME, "0.25");
+        check("time .5", TIME, ".5");
+        checkError("time");
+        checkError("time -1");
+        checkError("time 1.2.3");
+    }
+
+    @Test public void testTHREADS() {
+        check("threads 8", THREADS, "8");
+        checkError("threads");
+        checkError("threads two");
+    }
+
+    @Test public void testWEIGHT() {
+        check("weight material 120", WEIGHT, "material", "120");
+        check("weight edge -5", WEIGHT, "edge", "-5");
+        checkError("weight material");
+        checkError("weight 5");
+    }
+
+    @Test public void testDEPTH() {
+        check("depth 6", DEPTH, "6");
+        checkError("depth");
+        checkError("depth -2");
+    }
+
+    @Test public void testPONDER() {
+        check("ponder on", PONDER, "on");
+        check("ponder OFF", PONDER, "OFF");
+        checkError("ponder");
+        checkError("ponder maybe");
+    }
+
+    @Test public void testBOOK() {
+        check("book 6 openings.bin", BOOK, "6", "openings.bin");
+        checkError("book openings.bin");
+        checkError("book 6");
+    }
+
     @Test public void testSTART() {
         check("start", START);
         checkError("start foo");
@@ -58,6 +108,14 @@ public class CommandTest {
         checkError("clear foo");
     }
 
+    @Test public void testPERFT() {
+        check("perft 4", PERFT, "4");
+        check("perft-divide 12", PERFT_DIVIDE, "12");
+        checkError("perft");
+        checkError("perft -1");
+        checkError("perft-divide 3 foo");
+    }
+
     @Test public void testMOVE() {
         check("a3-b3", PIECEMOVE, "a3-b3");
         checkError("a3b3");
@@ -0,0 +1,62 @@
+package qirkat;
+
+import static qirkat.Feature.*;
+
+/** The static evaluation of positions used by AIs: a weighted sum of the
+ *  differences between the totals of each Feature over the pieces of the
+ *  player to move and over those of the opponent.  Since the Board keeps
+ *  these totals as moves are made and undone, an evaluation takes time
+ *  proportional only to the number of features.  The weights may be
+ *  changed at any time (see Game.doWeight).
+ *  @author Mariel Aquino
+ */
+class Evaluation {
+
+    /** Largest magnitude of a weight.  Keeps values well clear of those
+     *  that indicate wins. */
+    static final int MAX_WEIGHT = 10000;
+
+    /** An evaluation with the default weights. */
+    Evaluation() {
+        _weights = DEFAULT_WEIGHTS.clone();
+    }
+
+    /** Return the weight of feature F. */
+    int weight(Feature f) {
+        return _weights[f.ordinal()];
+    }
+
+    /** Set the weight of feature F to WEIGHT, which must be no greater in
+     *  magnitude than MAX_WEIGHT. */
+    void setWeight(Feature f, int weight) {
+        if (Math.abs(weight) > MAX_WEIGHT) {
+            throw new IllegalArgumentException("weight too large");
+        }
+        _weights[f.ordinal()] = weight;
+    }
+
+    /** Return the value of BOARD to the player to move: positive if it
+     *  favors that player and negative if it favors the opponent.  The
+     *  value to the opponent is the negation of this. */
+    int score(Board board) {
+        int score = 0;
+        for (int f = 0; f < NUM_FEATURES; f += 1) {
+            score += _weights[f] * board.featureDifference(f);
+        }
+        return score;
+    }
+
+    /** Default weights, indexed by feature ordinal. */
+    private static final int[] DEFAULT_WEIGHTS = new int[NUM_FEATURES];
+
+    static {
+        DEFAULT_WEIGHTS[MATERIAL.ordinal()] = 100;
+        DEFAULT_WEIGHTS[ADVANCEMENT.ordinal()] = 2;
+        DEFAULT_WEIGHTS[CENTER.ordinal()] = 3;
+        DEFAULT_WEIGHTS[EDGE.ordinal()] = 4;
+        DEFAULT_WEIGHTS[MOBILITY.ordinal()] = 1;
+    }
+
+    /** The weights of the features, indexed by ordinal. */
+    private final int[] _weights;
+}
@@ -0,0 +1,75 @@
+package qirkat;
+
+import static qirkat.PieceColor.*;
+
+/** The features of a player's position that an Evaluation weighs.  Each
+ *  is the sum, over the player's pieces, of a value that depends only on
+ *  the piece's square and color, so that a Board can keep the totals up
+ *  to date as pieces move.  The values for black are those for white
+ *  with the board turned around, so that a position and its mirror image
+ *  with colors reversed are evaluated alike.
+ *  @author Mariel Aquino
+ */
+enum Feature {
+
+    /** One for each piece. */
+    MATERIAL {
+        @Override
+        int value(PieceColor color, int col, int row) {
+            return 1;
+        }
+    },
+    /** The number of rows a piece has advanced from its own back
+     *  rank. */
+    ADVANCEMENT {
+        @Override
+        int value(PieceColor color, int col, int row) {
+            return color == WHITE ? row : Move.SIDE - 1 - row;
+        }
+    },
+    /** Nearness to the center: 2 for the center square, 1 for the squares
+     *  around it, and 0 on the edge of the board. */
+    CENTER {
+        @Override
+        int value(PieceColor color, int col, int row) {
+            int mid = Move.SIDE / 2;
+            return mid - Math.max(Math.abs(col - mid), Math.abs(row - mid));
+        }
+    },
+    /** One for each piece on the edge of the board, where it cannot be
+     *  captured. */
+    EDGE {
+        @Override
+        int value(PieceColor color, int col, int row) {
+            return col == 0 || row == 0 || col == Move.SIDE - 1
+                || row == Move.SIDE - 1 ? 1 : 0;
+        }
+    },
+    /** The number of lines leading from a piece's square to adjacent
+     *  squares (a rough measure of its freedom to move). */
+    MOBILITY {
+        @Override
+        int value(PieceColor color, int col, int row) {
+            int n = 0;
+            for (int d = 0; d < Move.NUM_DIRECTIONS; d += 1) {
+                int c = col + Move.DCOL[d], r = row + Move.DROW[d];
+                boolean diagonal = Move.DCOL[d] != 0 && Move.DROW[d] != 0;
+                if (0 <= c && c < Move.SIDE && 0 <= r && r < Move.SIDE
+                    && (!diagonal || (col + row) % 2 == 0)) {
+                    n += 1;
+                }
+            }
+            return n;
+        }
+    };
+
+    /** Return my value for a piece of color COLOR at column COL and row
+     *  ROW (both numbered from 0). */
+    abstract int value(PieceColor color, int col, int row);
+
+    /** Convenience value giving the features at each ordinal position. */
+    static final Feature[] FEATURES = values();
+
+    /** The number of features. */
+    static final int NUM_FEATURES = FEATURES.length;
+}
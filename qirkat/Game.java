@@ -55,14 +55,16 @@ class Game {
                 whitePlayer = new Manual(this, WHITE);
             }
             if (!_whiteIsManual) {
-                whitePlayer = new AI(this, WHITE);
+                whitePlayer = _whiteIsMCTS ? new MCTS(this, WHITE)
+                    : new AI(this, WHITE);
             }
             if (_blackIsManual) {
                 blackPlayer = new Manual(this, BLACK);
 
             }
             if (!_blackIsManual) {
-                blackPlayer = new AI(this, BLACK);
+                blackPlayer = _blackIsMCTS ? new MCTS(this, BLACK)
+                    : new AI(this, BLACK);
             }
 
             while (_state != SETUP && !_board.gameOver()) {
@@ -79,6 +81,8 @@ class Game {
                 }
             }
 
+            whitePlayer.endGame();
+            blackPlayer.endGame();
             if (_state == PLAYING) {
                 reportWinner();
             }
@@ -130,11 +134,85 @@ class Game {
         return null;
     }
 
+    /** Execute COMMAND, which must be one of the commands that adjust
+     *  the AIs (hash, time, threads, depth, weight, ponder, or seed),
+     *  without reading input. */
+    void execute(String command) {
+        Command cmnd = Command.parseCommand(command);
+        switch (cmnd.commandType()) {
+        case HASH: case TIME: case THREADS: case DEPTH: case WEIGHT:
+        case PONDER: case SEED:
+            _commands.get(cmnd.commandType()).accept(cmnd.operands());
+            break;
+        default:
+            throw error("Not an AI setting: %s", command);
+        }
+    }
+
     /** Return random integer between 0 (inclusive) and MAX>0 (exclusive). */
     int nextRandom(int max) {
         return _randoms.nextInt(max);
     }
 
+    /** Return the table of positions searched by the AIs in this game. */
+    TranspositionTable table() {
+        return _table;
+    }
+
+    /** Return the endgame tablebase consulted by the AIs in this game,
+     *  or null if there is none. */
+    Tablebase tablebase() {
+        return _tablebase;
+    }
+
+    /** Make the AIs in this game consult TABLEBASE (null for none). */
+    void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /** Allow AIs MILLIS milliseconds for each move. */
+    void setMoveTime(int millis) {
+        _moveTime = millis;
+    }
+
+    /** Return the opening book consulted by the AIs in this game, or
+     *  null if there is none. */
+    OpeningBook book() {
+        return _book;
+    }
+
+    /** Make the AIs in this game consult BOOK (null for none). */
+    void setBook(OpeningBook book) {
+        _book = book;
+    }
+
+    /** Return the number of milliseconds allowed to AIs for each move. */
+    int moveTime() {
+        return _moveTime;
+    }
+
+    /** Return the static evaluation used by the AIs in this game. */
+    Evaluation evaluation() {
+        return _evaluation;
+    }
+
+    /** Return true iff AIs should search while waiting for their
+     *  opponents' moves. */
+    boolean pondering() {
+        return _ponder;
+    }
+
+    /** Return the greatest depth to which AIs search, or 0 if it is
+     *  limited only by time. */
+    int depthLimit() {
+        return _depthLimit;
+    }
+
+    /** Return the number of threads each AI may use to search. */
+    int threads() {
+        return _threads;
+    }
+
     /** Report a move, using a message formed from FORMAT and ARGS as
      *  for String.format. */
     void reportMove(String format, Object... args) {
@@ -151,11 +229,21 @@ class Game {
 
     /** Perform the command 'auto OPERANDS[0]'. */
     void doAuto(String[] operands) {
+        doAutoEngine(new String[] { operands[0], "ai" });
+    }
+
+    /** Perform 'auto OPERANDS[0] OPERANDS[1]': let the player of the
+     *  color given by the first operand be played by the engine given
+     *  by the second: "ai" for AI and "mcts" for MCTS. */
+    void doAutoEngine(String[] operands) {
         _state = SETUP;
+        boolean mcts = operands[1].toLowerCase().equals("mcts");
         if (operands[0].toLowerCase().equals("white")) {
             _whiteIsManual = false;
+            _whiteIsMCTS = mcts;
         } else {
             _blackIsManual = false;
+            _blackIsMCTS = mcts;
         }
     }
 
@@ -228,11 +316,14 @@ class Game {
 
     /** Perform the command 'set OPERANDS[0] OPERANDS[1]'. */
     void doSet(String[] operands) {
-        doClear(operands);
-        _board.setPieces(operands[1],
+        _board.beginChanges();
+        try {
+            doClear(operands);
+            _board.setPieces(operands[1],
                 operands[0].toLowerCase().equals("white") ? WHITE : BLACK);
-
-
+        } finally {
+            _board.endChanges();
+        }
     }
 
     /** Perform the command 'dump'. */
@@ -256,6 +347,153 @@ class Game {
         }
     }
 
+    /** Execute 'hash OPERANDS[0]', where the operand is a string of
+     *  decimal digits giving the size in megabytes of the table of
+     *  positions searched by AIs.  Discards the contents of the table. */
+    void doHash(String[] operands) {
+        try {
+            _table.resize(Integer.parseInt(operands[0]));
+        } catch (NumberFormatException e) {
+            throw error("Hash size too large: %s", operands[0]);
+        } catch (OutOfMemoryError e) {
+            _table.resize(TranspositionTable.DEFAULT_MEGABYTES);
+            throw error("Not enough memory for hash size %s", operands[0]);
+        }
+    }
+
+    /** Execute 'time OPERANDS[0]', where the operand is a decimal number
+     *  of seconds to allow AIs for each move. */
+    void doTime(String[] operands) {
+        double seconds = Double.parseDouble(operands[0]);
+        if (seconds * MILLIS_PER_SECOND > Integer.MAX_VALUE) {
+            throw error("Time limit too large: %s", operands[0]);
+        }
+        _moveTime = (int) Math.round(seconds * MILLIS_PER_SECOND);
+    }
+
+    /** Execute 'threads OPERANDS[0]', where the operand is a string of
+     *  decimal digits giving the number of threads each AI may use to
+     *  search for its moves. */
+    void doThreads(String[] operands) {
+        int threads;
+        try {
+            threads = Integer.parseInt(operands[0]);
+        } catch (NumberFormatException e) {
+            threads = 0;
+        }
+        if (threads < 1 || threads > MAX_THREADS) {
+            throw error("Number of threads must be from 1 to %d",
+                        MAX_THREADS);
+        }
+        _threads = threads;
+    }
+
+    /** Execute 'depth OPERANDS[0]', where the operand is a string of
+     *  decimal digits giving the greatest depth to which AIs search
+     *  (within their time limits), or 0 for no limit but time. */
+    void doDepth(String[] operands) {
+        try {
+            _depthLimit = Integer.parseInt(operands[0]);
+        } catch (NumberFormatException e) {
+            _depthLimit = 0;
+        }
+    }
+
+    /** Execute 'weight OPERANDS[0] OPERANDS[1]': set the weight the AIs
+     *  give to the feature named by the first operand (see Feature) to
+     *  the second, an optionally signed string of decimal digits. */
+    void doWeight(String[] operands) {
+        Feature feature;
+        try {
+            feature = Feature.valueOf(operands[0].toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw error("Unknown feature: %s", operands[0]);
+        }
+        try {
+            _evaluation.setWeight(feature, Integer.parseInt(operands[1]));
+        } catch (IllegalArgumentException e) {
+            throw error("Weights must be from %d to %d",
+                        -Evaluation.MAX_WEIGHT, Evaluation.MAX_WEIGHT);
+        }
+    }
+
+    /** Execute 'ponder OPERANDS[0]', where the operand is "on" or "off":
+     *  whether AIs should search while waiting for their opponents. */
+    void doPonder(String[] operands) {
+        _ponder = operands[0].toLowerCase().equals("on");
+    }
+
+    /** Execute 'book OPERANDS[0] OPERANDS[1]': search every position
+     *  within the number of moves given by the first operand (a string
+     *  of decimal digits) of the start of a game, with the current
+     *  settings for AIs, write the moves found as an opening book to the
+     *  file named by the second, and let the AIs use it. */
+    void doBook(String[] operands) {
+        int plies;
+        try {
+            plies = Integer.parseInt(operands[0]);
+        } catch (NumberFormatException e) {
+            throw error("Book depth too large: %s", operands[0]);
+        }
+        long start = System.nanoTime();
+        OpeningBook book = OpeningBook.build(this, plies);
+        try {
+            book.write(operands[1]);
+        } catch (IOException e) {
+            throw error("Could not write %s", operands[1]);
+        }
+        _book = book;
+        _reporter.moveMsg("Book: %d positions%nTime: %.3f s", book.size(),
+                          (System.nanoTime() - start) / NANOS_PER_SECOND);
+    }
+
+    /** Execute 'perft OPERANDS[0]': report the number of leaves of the
+     *  tree of legal moves of that depth from the current position, and
+     *  how quickly they were counted. */
+    void doPerft(String[] operands) {
+        perft(operands[0], false);
+    }
+
+    /** Execute 'perft-divide OPERANDS[0]': as for 'perft', but also
+     *  report the count for each legal move from the current position. */
+    void doPerftDivide(String[] operands) {
+        perft(operands[0], true);
+    }
+
+    /** Count the leaves of the tree of legal moves of depth DEPTH (a
+     *  string of decimal digits) from the current position, and report
+     *  the count, time taken, and nodes per second.  Report the count
+     *  below each legal move as well iff DIVIDE. */
+    private void perft(String depth, boolean divide) {
+        int plies;
+        try {
+            plies = Integer.parseInt(depth);
+        } catch (NumberFormatException e) {
+            throw error("Perft depth too large: %s", depth);
+        }
+        Board board = _board.detachedCopy();
+        long start = System.nanoTime();
+        long nodes;
+        if (divide && plies > 0) {
+            MoveList moves = new MoveList();
+            board.getMoves(moves);
+            nodes = 0;
+            for (int i = 0; i < moves.size(); i += 1) {
+                board.makeMove(moves.get(i));
+                long count = board.perft(plies - 1);
+                board.undo();
+                _reporter.moveMsg("%s: %d", Move.unpack(moves.get(i)), count);
+                nodes += count;
+            }
+        } else {
+            nodes = board.perft(plies);
+        }
+        double seconds =
+            Math.max(System.nanoTime() - start, 1) / NANOS_PER_SECOND;
+        _reporter.moveMsg("Nodes: %d%nTime: %.3f s (%.0f nodes/s)",
+                          nodes, seconds, nodes / seconds);
+    }
+
     /** Execute the artificial 'error' command. */
     void doError(String[] unused) {
         throw error("Command not understood");
@@ -274,20 +512,40 @@ class Game {
 
     {
         _commands.put(AUTO, this::doAuto);
+        _commands.put(AUTO_ENGINE, this::doAutoEngine);
         _commands.put(CLEAR, this::doClear);
         _commands.put(DUMP, this::doDump);
         _commands.put(HELP, this::doHelp);
         _commands.put(MANUAL, this::doManual);
         _commands.put(PIECEMOVE, this::doMove);
         _commands.put(SEED, this::doSeed);
+        _commands.put(HASH, this::doHash);
+        _commands.put(TIME, this::doTime);
+        _commands.put(THREADS, this::doThreads);
+        _commands.put(DEPTH, this::doDepth);
+        _commands.put(WEIGHT, this::doWeight);
+        _commands.put(PONDER, this::doPonder);
+        _commands.put(BOOK, this::doBook);
         _commands.put(SETBOARD, this::doSet);
         _commands.put(START, this::doStart);
         _commands.put(LOAD, this::doLoad);
+        _commands.put(PERFT, this::doPerft);
+        _commands.put(PERFT_DIVIDE, this::doPerftDivide);
         _commands.put(QUIT, this::doQuit);
         _commands.put(ERROR, this::doError);
         _commands.put(EOF, this::doQuit);
     }
 
+    /** Number of nanoseconds in a second. */
+    private static final double NANOS_PER_SECOND = 1e9;
+    /** Number of milliseconds in a second. */
+    private static final double MILLIS_PER_SECOND = 1e3;
+    /** Milliseconds allowed to AIs for each move, if not otherwise
+     *  specified. */
+    private static final int DEFAULT_MOVE_TIME = 1000;
+    /** Largest number of threads an AI may use. */
+    private static final int MAX_THREADS = 256;
+
     /** Input source. */
     private final CommandSources _inputs = new CommandSources();
 
@@ -295,12 +553,30 @@ class Game {
     private Board _board, _constBoard;
     /** Indicate which players are manual players (as opposed to AIs). */
     private boolean _whiteIsManual, _blackIsManual;
+    /** Indicate which AI players use MCTS (as opposed to AI). */
+    private boolean _whiteIsMCTS, _blackIsMCTS;
     /** Current game state. */
     private State _state;
     /** Used to send messages to the user. */
     private Reporter _reporter;
     /** Source of pseudo-random numbers (used by AIs). */
     private Random _randoms = new Random();
+    /** Table of positions searched by AIs, kept from move to move. */
+    private final TranspositionTable _table = new TranspositionTable();
+    /** Opening book consulted by AIs, or null. */
+    private OpeningBook _book;
+    /** Endgame tablebase consulted by AIs, or null. */
+    private Tablebase _tablebase;
+    /** Milliseconds allowed to AIs for each move. */
+    private int _moveTime = DEFAULT_MOVE_TIME;
+    /** Greatest depth of AI searches, or 0 for no limit. */
+    private int _depthLimit;
+    /** Number of threads each AI may use to search. */
+    private int _threads = 1;
+    /** True iff AIs search while waiting for their opponents. */
+    private boolean _ponder;
+    /** Static evaluation used by AIs. */
+    private final Evaluation _evaluation = new Evaluation();
     /** Holds the white player in the global frame. */
     private Player whitePlayer;
     /** Holds the black player in the global frame. */
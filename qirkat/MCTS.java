@@ -0,0 +1,315 @@
+package qirkat;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** A Player that computes its own moves by Monte Carlo tree search: it
+ *  grows a tree of the positions that may follow the current one,
+ *  choosing which branch to explore by the UCT rule (balancing the
+ *  fraction of games won through each move against how little it has
+ *  been tried), and finishes each exploration by playing random moves to
+ *  the end of the game.  The move tried most often is played.
+ *
+ *  If its game allows more than one thread, each thread grows its own
+ *  tree (root parallelism), and the numbers of times each move was
+ *  tried are added up over all the trees.  Each tree is kept from move
+ *  to move, so that the part that follows the moves actually played is
+ *  not explored again from scratch.
+ *  @author Mariel Aquino
+ */
+class MCTS extends Player {
+
+    /** Weight of the exploration term of the UCT rule. */
+    private static final double EXPLORATION = 1.4;
+    /** Number of nanoseconds in a millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000;
+    /** Number of moves (my move and my opponent's reply) separating the
+     *  roots of successive searches. */
+    private static final int REUSE_DEPTH = 2;
+
+    /** A new MCTS player for GAME that will play MYCOLOR. */
+    MCTS(Game game, PieceColor myColor) {
+        super(game, myColor);
+    }
+
+    @Override
+    Move myMove() {
+        long start = Main.startTiming();
+        Move move = findMove();
+        Main.endTiming(start);
+
+        game().reportMove("%s moves %s.", myColor(), move);
+
+        return move;
+    }
+
+    /** Return a move for me from the current position, assuming there is
+     *  a move, after exploring for the time allowed by my game. */
+    private Move findMove() {
+        MoveList moves = new MoveList();
+        board().getMoves(moves);
+        if (moves.size() == 1) {
+            return Move.unpack(moves.get(0));
+        }
+        int numThreads = Math.max(1, game().threads());
+        long start = System.nanoTime();
+        _deadline = start + game().moveTime() * NANOS_PER_MILLI;
+        if (_trees.length != numThreads) {
+            _trees = Arrays.copyOf(_trees, numThreads);
+        }
+        for (int i = 0; i < numThreads; i += 1) {
+            if (_trees[i] == null) {
+                _trees[i] = new Tree();
+            }
+            _trees[i].setUp(board(), game().nextRandom(Integer.MAX_VALUE));
+        }
+        Thread[] helpers = new Thread[numThreads - 1];
+        for (int i = 0; i < helpers.length; i += 1) {
+            helpers[i] = new Thread(_trees[i + 1]);
+            helpers[i].start();
+        }
+        _trees[0].run();
+        SearchStats stats = new SearchStats();
+        stats.add(_trees[0].stats());
+        for (int i = 0; i < helpers.length; i += 1) {
+            while (helpers[i].isAlive()) {
+                try {
+                    helpers[i].join();
+                } catch (InterruptedException excp) {
+                    /* Keep waiting: helpers stop at the deadline. */
+                }
+            }
+            stats.add(_trees[i + 1].stats());
+        }
+        stats.setTime(System.nanoTime() - start);
+        Main.reportSearch(stats);
+
+        long best = moves.get(0);
+        long mostVisits = -1;
+        for (int i = 0; i < moves.size(); i += 1) {
+            long visits = 0;
+            for (Tree tree : _trees) {
+                visits += tree.visits(moves.get(i));
+            }
+            if (visits > mostVisits) {
+                mostVisits = visits;
+                best = moves.get(i);
+            }
+        }
+        return Move.unpack(best);
+    }
+
+    /** The value of System.nanoTime() at which the current search
+     *  stops. */
+    private volatile long _deadline;
+
+    /** The trees grown by each thread.  Tree #0 is grown by the thread
+     *  that calls myMove. */
+    private Tree[] _trees = new Tree[0];
+
+    /** A node of a search tree, standing for the position reached by the
+     *  moves on the path to it from the root. */
+    private static class Node {
+
+        /** A node reached by MOVE (packed) from PARENT (null for the
+         *  root). */
+        Node(Node parent, long move) {
+            _parent = parent;
+            _move = move;
+        }
+
+        /** The node from which I am reached, or null if I am the
+         *  root. */
+        private Node _parent;
+        /** The move (packed) from _parent that reaches me. */
+        private final long _move;
+        /** The Zobrist key of my position, or 0 if I have never been
+         *  reached. */
+        private long _key;
+        /** The nodes reached by each legal move from my position, or null
+         *  if they have not been created. */
+        private Node[] _children;
+        /** The number of games played through me. */
+        private int _visits;
+        /** The number of those games won by the player who made _move. */
+        private int _wins;
+    }
+
+    /** The search tree grown by one thread. */
+    private class Tree implements Runnable {
+
+        /** Prepare to search from the position on BOARD, using random
+         *  numbers generated from SEED.  If the position is one already
+         *  reached in my last search, keep the subtree below it. */
+        void setUp(Board board, long seed) {
+            _board = board.detachedCopy();
+            _random.setSeed(seed);
+            _stats.clear();
+            _root = find(_root, board.key(), REUSE_DEPTH);
+            if (_root == null) {
+                _root = new Node(null, Move.NO_MOVE);
+                _root._key = board.key();
+            }
+            _root._parent = null;
+        }
+
+        /** Grow the tree until the deadline passes. */
+        @Override
+        public void run() {
+            while (System.nanoTime() - _deadline < 0) {
+                explore();
+            }
+        }
+
+        /** Return the counts of my work since the last setUp. */
+        SearchStats stats() {
+            return _stats;
+        }
+
+        /** Return the number of games played through the move MOV
+         *  (packed) from the root. */
+        int visits(long mov) {
+            if (_root._children != null) {
+                for (Node child : _root._children) {
+                    if (child._move == mov) {
+                        return child._visits;
+                    }
+                }
+            }
+            return 0;
+        }
+
+        /** Return the node with Zobrist key KEY that is NODE or lies at
+         *  most DEPTH moves below it, or null if there is none. */
+        private Node find(Node node, long key, int depth) {
+            if (node == null || node._key == 0) {
+                return null;
+            } else if (node._key == key) {
+                return node;
+            } else if (depth == 0 || node._children == null) {
+                return null;
+            }
+            for (Node child : node._children) {
+                Node result = find(child, key, depth - 1);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return null;
+        }
+
+        /** Play one game: descend the tree by the UCT rule to a node not
+         *  yet visited (creating the children of visited nodes as
+         *  needed), play randomly from there to the end of the game, and
+         *  record the result in each node passed through. */
+        private void explore() {
+            Node node = _root;
+            int made = 0;
+            while (true) {
+                if (node._children == null) {
+                    if (node._visits == 0 && node != _root) {
+                        break;
+                    }
+                    expand(node);
+                }
+                if (node._children.length == 0) {
+                    break;
+                }
+                node = select(node);
+                _board.makeMove(node._move);
+                _stats.countNode();
+                made += 1;
+                if (node._key == 0) {
+                    node._key = _board.key();
+                }
+            }
+            _stats.reachPly(made);
+            PieceColor mover = _board.whoseMove().opposite();
+            PieceColor winner = playout();
+            for (; made > 0; made -= 1) {
+                _board.undo();
+            }
+            for (; node != null; node = node._parent) {
+                node._visits += 1;
+                if (winner == mover) {
+                    node._wins += 1;
+                }
+                mover = mover.opposite();
+            }
+        }
+
+        /** Create the children of NODE, whose position is on _board. */
+        private void expand(Node node) {
+            _moves.clear();
+            _board.getMoves(_moves);
+            Node[] children = new Node[_moves.size()];
+            for (int i = 0; i < children.length; i += 1) {
+                children[i] = new Node(node, _moves.get(i));
+            }
+            node._children = children;
+        }
+
+        /** Return the child of NODE to explore next: one never visited,
+         *  if any, and otherwise the one with the greatest sum of its
+         *  fraction of wins and an exploration term that shrinks as it
+         *  is visited more often than its siblings. */
+        private Node select(Node node) {
+            double logVisits = Math.log(Math.max(1, node._visits));
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (Node child : node._children) {
+                if (child._visits == 0) {
+                    return child;
+                }
+                double value = (double) child._wins / child._visits
+                    + EXPLORATION * Math.sqrt(logVisits / child._visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /** Play random moves from the position on _board to the end of
+         *  the game (or to a position in my game's tablebase), restore
+         *  the position, and return the color of the winner. */
+        private PieceColor playout() {
+            Tablebase tablebase = game().tablebase();
+            PieceColor winner;
+            int made = 0;
+            while (true) {
+                int plies = tablebase == null ? -1 : tablebase.probe(_board);
+                if (plies >= 0) {
+                    winner = plies % 2 == 1 ? _board.whoseMove()
+                        : _board.whoseMove().opposite();
+                    break;
+                }
+                _moves.clear();
+                _board.getMoves(_moves);
+                if (_moves.isEmpty()) {
+                    winner = _board.whoseMove().opposite();
+                    break;
+                }
+                _board.makeMove(_moves.get(_random.nextInt(_moves.size())));
+                _stats.countNode();
+                made += 1;
+            }
+            for (; made > 0; made -= 1) {
+                _board.undo();
+            }
+            return winner;
+        }
+
+        /** The root of my tree, whose position is that being searched. */
+        private Node _root;
+        /** My copy of the board being searched. */
+        private Board _board;
+        /** Source of the random moves of my playouts. */
+        private final Random _random = new Random();
+        /** Buffer for the legal moves of a position. */
+        private final MoveList _moves = new MoveList();
+        /** Counts of the work done by my current search. */
+        private final SearchStats _stats = new SearchStats();
+    }
+}
@@ -10,12 +10,45 @@ import java.io.PipedWriter;
 public class Main {
 
     /** Run Qirkat game.  Use display if ARGS[k] is '--display', timing
-     *  if ARGS[k] is "--timing". */
+     *  if ARGS[k] is "--timing".  If ARGS[k] is "--tablebase" or
+     *  "--book", the AIs consult the endgame tablebase or opening book
+     *  (as written by the 'book' command) in the file named by
+     *  ARGS[k+1].  Instead of reading commands:
+     *    If ARGS[k] is "--make-tablebase", generate a tablebase of the
+     *  positions with at most ARGS[k+1] pieces and write it to the file
+     *  named by ARGS[k+2].
+     *    If ARGS[k] is "--selfplay", play ARGS[k+1] games between AIs
+     *  silently and report the results.
+     *    If ARGS[k] is "--match", play up to ARGS[k+1] games between the
+     *  engines configured (see Match) by the arguments following
+     *  "--engine1" and "--engine2", stopping early once an SPRT of
+     *  the Elo differences following "--sprt" (default 0 and 20)
+     *  decides, with openings of the number of random moves following
+     *  "--openings" (default 4), chosen with the seed following
+     *  "--seed".
+     *  Self-play games start from openings chosen in the same way.
+     *  Self-play and matches play the number of games following
+     *  "--threads" at once (by default, one per processor), allowing
+     *  the number of seconds following "--time" per move (by default,
+     *  1), unless an engine's configuration says otherwise. */
     public static void main(String[] args) {
         boolean useGUI;
+        String tablebaseFile, newTablebaseFile, bookFile;
+        String[] engines = { "", "" };
+        int tablebasePieces, selfPlayGames, matchGames, threads, openings;
+        double moveTime, elo0, elo1;
+        long seed;
         System.out.println("CS61B Qirkat! Version 2.0");
         useGUI = false;
         _timing = false;
+        tablebaseFile = newTablebaseFile = bookFile = null;
+        tablebasePieces = selfPlayGames = matchGames = 0;
+        threads = Runtime.getRuntime().availableProcessors();
+        openings = DEFAULT_OPENING_PLIES;
+        moveTime = 1;
+        elo0 = 0;
+        elo1 = DEFAULT_ELO1;
+        seed = 0;
         for (int i = 0; i < args.length; i += 1) {
             switch (args[i]) {
             case "--display":
@@ -24,12 +57,96 @@ public class Main {
             case "--timing":
                 _timing = true;
                 break;
+            case "--tablebase":
+                i += 1;
+                tablebaseFile = operand(args, i, ".+");
+                break;
+            case "--book":
+                i += 1;
+                bookFile = operand(args, i, ".+");
+                break;
+            case "--make-tablebase":
+                tablebasePieces = Integer.parseInt(operand(args, i + 1, "\\d"));
+                newTablebaseFile = operand(args, i + 2, ".+");
+                i += 2;
+                break;
+            case "--selfplay":
+                i += 1;
+                selfPlayGames = Integer.parseInt(operand(args, i, INTEGER));
+                break;
+            case "--match":
+                i += 1;
+                matchGames = Integer.parseInt(operand(args, i, INTEGER));
+                break;
+            case "--engine1":
+            case "--engine2":
+                engines[args[i].endsWith("1") ? 0 : 1] =
+                    operand(args, i + 1, ".*");
+                i += 1;
+                break;
+            case "--sprt":
+                elo0 = Double.parseDouble(operand(args, i + 1, NUMBER));
+                elo1 = Double.parseDouble(operand(args, i + 2, NUMBER));
+                i += 2;
+                break;
+            case "--openings":
+                i += 1;
+                openings = Integer.parseInt(operand(args, i, INTEGER));
+                break;
+            case "--seed":
+                i += 1;
+                seed = Long.parseLong(operand(args, i, INTEGER));
+                break;
+            case "--threads":
+                i += 1;
+                threads = Integer.parseInt(operand(args, i, INTEGER));
+                break;
+            case "--time":
+                i += 1;
+                moveTime = Double.parseDouble(operand(args, i, DURATION));
+                break;
             default:
                 usage();
                 break;
             }
         }
 
+        if (newTablebaseFile != null) {
+            makeTablebase(tablebasePieces, newTablebaseFile);
+            return;
+        }
+        Tablebase tablebase = loadTablebase(tablebaseFile);
+        OpeningBook book = loadBook(bookFile);
+        int millis = (int) Math.round(moveTime * MILLIS_PER_SECOND);
+        if (selfPlayGames > 0) {
+            SelfPlay selfPlay =
+                new SelfPlay(selfPlayGames, threads, millis, openings, seed);
+            selfPlay.setTablebase(tablebase);
+            selfPlay.setBook(book);
+            selfPlay.run();
+            reportTotalTimes();
+            return;
+        }
+        if (matchGames > 0) {
+            Match match;
+            try {
+                match = new Match(matchGames, threads,
+                                  "time " + moveTime + "; " + engines[0],
+                                  "time " + moveTime + "; " + engines[1],
+                                  openings, seed, elo0, elo1);
+            } catch (GameException excp) {
+                System.err.printf("Bad engine configuration: %s%n",
+                                  excp.getMessage());
+                System.exit(1);
+                return;
+            }
+            match.setTablebase(tablebase);
+            match.setBook(book);
+            match.run();
+            reportTotalTimes();
+            return;
+        }
+
         Game game;
         Board board = new Board();
 
@@ -57,30 +174,103 @@ public class Main {
                                              true),
                             new TextReporter());
         }
+        game.setTablebase(tablebase);
+        game.setBook(book);
         game.process();
     }
 
+    /** Return the tablebase in the file named FILENAME, or null if
+     *  FILENAME is null.  Exits if the file cannot be read. */
+    static Tablebase loadTablebase(String fileName) {
+        if (fileName == null) {
+            return null;
+        }
+        try {
+            return Tablebase.load(fileName);
+        } catch (IOException excp) {
+            System.err.printf("Could not read tablebase: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /** Return the opening book in the file named FILENAME, or null if
+     *  FILENAME is null.  Exits if the file cannot be read. */
+    static OpeningBook loadBook(String fileName) {
+        if (fileName == null) {
+            return null;
+        }
+        try {
+            return OpeningBook.load(fileName);
+        } catch (IOException excp) {
+            System.err.printf("Could not read opening book: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /** Generate a tablebase of all positions with at most PIECES pieces,
+     *  using all available processors, and write it to the file named
+     *  FILENAME. */
+    static void makeTablebase(int pieces, String fileName) {
+        if (pieces > Tablebase.MAX_PIECES) {
+            System.err.printf("Tablebases are limited to %d pieces.%n",
+                              Tablebase.MAX_PIECES);
+            System.exit(1);
+        }
+        long start = System.currentTimeMillis();
+        Tablebase tablebase =
+            Tablebase.generate(pieces,
+                               Runtime.getRuntime().availableProcessors());
+        try {
+            tablebase.write(fileName);
+        } catch (IOException excp) {
+            System.err.printf("Could not write tablebase: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+        System.out.printf("Wrote %d-piece tablebase to %s in %d msec.%n",
+                          pieces, fileName,
+                          System.currentTimeMillis() - start);
+    }
+
+    /** Return ARGS[K], after checking that it exists and matches
+     *  PATTERN (and otherwise giving a usage message and exiting). */
+    static String operand(String[] args, int k, String pattern) {
+        if (k >= args.length || !args[k].matches(pattern)) {
+            usage();
+        }
+        return args[k];
+    }
+
     /** Give usage message and exit. */
     static void usage() {
         System.err.println("Usage: java qirkat.Main [--display] [--timing]"
-                           + " [--strict]");
+                           + " [--strict] [--tablebase FILE] [--book FILE]"
+                           + " [--make-tablebase PIECES FILE]"
+                           + " [--selfplay GAMES | --match GAMES"
+                           + " --engine1 CONFIG --engine2 CONFIG"
+                           + " [--sprt ELO0 ELO1]] [--openings PLIES]"
+                           + " [--seed N] [--threads T] [--time SECONDS]");
         System.exit(1);
     }
 
     /* TIMING */
 
-    /** Start timing an operation. */
-    static void startTiming() {
-        if (_timing) {
-            _startTime = System.currentTimeMillis();
-        }
+    /** Start timing an operation, returning its start time, to be passed
+     *  to endTiming.  Each operation keeps its own start time, so that
+     *  operations in different threads may be timed at once. */
+    static long startTiming() {
+        return _timing ? System.currentTimeMillis() : 0;
     }
 
-    /** End the timing started with the last call to startTiming().
-     *  Report result if we are timing. */
-    static void endTiming() {
+    /** End the timing of the operation started at START, as returned by
+     *  startTiming().  Report result if we are timing. */
+    static synchronized void endTiming(long start) {
         if (_timing) {
-            long time = System.currentTimeMillis() - _startTime;
+            long time = System.currentTimeMillis() - start;
             System.err.printf("[%d msec]%n", time);
             _maxTime = Math.max(_maxTime, time);
             _totalTime += time;
@@ -88,6 +278,15 @@ public class Main {
         }
     }
 
+    /** Report the statistics STATS of a search for a move, and add them
+     *  to the totals, if timing. */
+    static synchronized void reportSearch(SearchStats stats) {
+        if (_timing) {
+            System.err.printf("[%s]%n", stats);
+            _searchTotals.add(stats);
+        }
+    }
+
     /** Report total time statistics, if timing. */
     static void reportTotalTimes() {
         if (_timing && _numTimedOps > 0) {
@@ -97,6 +296,9 @@ public class Main {
                               _numTimedOps, _totalTime / _numTimedOps,
                               _maxTime);
         }
+        if (_timing && _searchTotals.nodes() > 0) {
+            System.err.printf("[Search totals: %s]%n", _searchTotals);
+        }
     }
 
     /** True iff AIs should time. */
@@ -105,15 +307,32 @@ public class Main {
     /** Accumulated time. */
     private static long _totalTime;
 
-    /** Last start time. */
-    private static long _startTime;
-
     /** Number of operations timed. */
     private static int _numTimedOps;
 
     /** Maximum operation time. */
     private static long _maxTime;
 
+    /** Accumulated search statistics. */
+    private static SearchStats _searchTotals = new SearchStats();
+
+    /** Number of milliseconds in a second. */
+    private static final double MILLIS_PER_SECOND = 1e3;
+
+    /** Syntax of a non-negative integer argument. */
+    private static final String INTEGER = "\\d+";
+    /** Syntax of a non-negative number argument (as for the 'time'
+     *  command). */
+    private static final String DURATION = "\\d+(\\.\\d*)?|\\.\\d+";
+    /** Syntax of a number argument. */
+    private static final String NUMBER = "-?(" + DURATION + ")";
+    /** Number of random moves that start each game of a match, if not
+     *  otherwise specified. */
+    private static final int DEFAULT_OPENING_PLIES = 4;
+    /** The Elo difference that an SPRT distinguishes from none, if not
+     *  otherwise specified. */
+    private static final double DEFAULT_ELO1 = 20;
+
     /** Size of the buffer for reading commands from a GUI (bytes). */
     private static final int BUFFER_LEN = 128;
 
@@ -0,0 +1,260 @@
+package qirkat;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static qirkat.PieceColor.*;
+
+/** A match between two engine configurations, played silently, several
+ *  games at a time, to measure their difference in strength.
+ *
+ *  A configuration is a list of commands separated by semicolons: any of
+ *  the commands that adjust AIs (see Game.execute), and "ai" or "mcts"
+ *  to choose the engine (AI, by default).  For example,
+ *  "mcts; time 0.5" or "depth 6; weight edge 0".
+ *
+ *  Games are played in pairs from the same opening (a number of random
+ *  moves from the initial position), with the engines exchanging colors,
+ *  so that neither benefits from a lucky opening.  After each game, the
+ *  match applies a sequential probability ratio test (SPRT) of the
+ *  hypothesis that the first engine is ELO0 Elo points stronger than the
+ *  second against the hypothesis that it is ELO1 points stronger, and
+ *  stops as soon as the test accepts one of them.  Since Qirkat cannot
+ *  be drawn, each game is a Bernoulli trial.
+ *  @author Mariel Aquino
+ */
+class Match {
+
+    /** A match of at most GAMES games, THREADS of them at a time,
+     *  between the engines configured by CONFIG1 and CONFIG2.  Each game
+     *  starts with OPENINGPLIES random moves, chosen with random numbers
+     *  generated from SEED.  The SPRT distinguishes between differences
+     *  of ELO0 and ELO1. */
+    Match(int games, int threads, String config1, String config2,
+          int openingPlies, long seed, double elo0, double elo1) {
+        _games = games;
+        _threads = Math.max(1, threads);
+        _configs = new String[] { config1, config2 };
+        _openingPlies = openingPlies;
+        _seed = seed;
+        _elo0 = elo0;
+        _elo1 = elo1;
+        for (String config : _configs) {
+            configure(config, new Game(new Board(), null,
+                                       new SilentReporter()));
+        }
+    }
+
+    /** Let the engines consult TABLEBASE (null for none). */
+    void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /** Let the engines consult BOOK (null for none). */
+    void setBook(OpeningBook book) {
+        _book = book;
+    }
+
+    /** Play the match, reporting the result of each game and a summary
+     *  on the standard output. */
+    void run() {
+        Thread[] workers = new Thread[_threads];
+        for (int i = 0; i < _threads; i += 1) {
+            workers[i] = new Thread(this::playGames);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException excp) {
+                    /* Keep waiting. */
+                }
+            }
+        }
+        int played = _wins + _losses;
+        System.out.printf("Engine 1 (%s) vs. engine 2 (%s): "
+                          + "+%d -%d in %d games%n", _configs[0],
+                          _configs[1], _wins, _losses, played);
+        if (played == 0) {
+            return;
+        }
+        double score = (double) _wins / played;
+        double margin = Z_95 * Math.sqrt(score * (1 - score) / played);
+        System.out.printf("Score: %.1f%%, Elo difference: %.1f "
+                          + "(95%% interval %.1f to %.1f)%n",
+                          PERCENT * score, elo(score), elo(score - margin),
+                          elo(score + margin));
+        double llr = llr(_wins, _losses, _elo0, _elo1);
+        System.out.printf("SPRT (elo0 %.1f, elo1 %.1f): LLR %.2f "
+                          + "[%.2f, %.2f]: %s%n", _elo0, _elo1, llr,
+                          LOWER_BOUND, UPPER_BOUND,
+                          llr >= UPPER_BOUND ? "H1 accepted"
+                          : llr <= LOWER_BOUND ? "H0 accepted"
+                          : "inconclusive");
+    }
+
+    /** Play games until all have been started or the SPRT has
+     *  decided.  Each engine has its own Game, and so its own Board,
+     *  on which the moves of both are made. */
+    private void playGames() {
+        while (!_decided) {
+            int game = _started.getAndIncrement();
+            if (game >= _games) {
+                return;
+            }
+            PieceColor first = game % 2 == 0 ? WHITE : BLACK;
+            Board board = opening(_openingPlies, _seed + game / 2);
+            int plies = 0;
+            Player[] players = new Player[_configs.length];
+            Board[] boards = new Board[_configs.length];
+            for (int i = 0; i < players.length; i += 1) {
+                boards[i] = new Board(board);
+                Game setting =
+                    new Game(boards[i], null, new SilentReporter());
+                setting.setTablebase(_tablebase);
+                setting.setBook(_book);
+                PieceColor color = i == 0 ? first : first.opposite();
+                if (configure(_configs[i], setting)) {
+                    players[i] = new MCTS(setting, color);
+                } else {
+                    players[i] = new AI(setting, color);
+                }
+            }
+            while (!board.gameOver()) {
+                Player player =
+                    board.whoseMove() == first ? players[0] : players[1];
+                Move move = player.myMove();
+                board.makeMove(move);
+                for (Board b : boards) {
+                    b.makeMove(move);
+                }
+                plies += 1;
+            }
+            for (Player player : players) {
+                player.endGame();
+            }
+            record(game, first, board.whoseMove() != first, plies);
+        }
+    }
+
+    /** Return a new board with an opening on it: PLIES random moves
+     *  (fewer if the game ends sooner) from the initial position, chosen
+     *  with random numbers generated from SEED, so that equal seeds give
+     *  equal openings. */
+    static Board opening(int plies, long seed) {
+        Random random = new Random(seed);
+        Board board = new Board();
+        MoveList moves = new MoveList();
+        for (int i = 0; i < plies && !board.gameOver(); i += 1) {
+            moves.clear();
+            board.getMoves(moves);
+            board.makeMove(moves.get(random.nextInt(moves.size())));
+        }
+        return board;
+    }
+
+    /** Record and report game #GAME, in which engine 1 played FIRST and
+     *  won iff WON, after PLIES moves following the opening, and decide
+     *  whether the match is over. */
+    private synchronized void record(int game, PieceColor first,
+                                     boolean won, int plies) {
+        if (won) {
+            _wins += 1;
+        } else {
+            _losses += 1;
+        }
+        double llr = llr(_wins, _losses, _elo0, _elo1);
+        System.out.printf("Game %d: engine 1 (%s) %s in %d plies; "
+                          + "+%d -%d, LLR %.2f%n", game + 1, first,
+                          won ? "won" : "lost", plies, _wins, _losses, llr);
+        if (llr >= UPPER_BOUND || llr <= LOWER_BOUND) {
+            _decided = true;
+        }
+    }
+
+    /** Apply CONFIG, an engine configuration, to GAME, and return true
+     *  iff it calls for MCTS rather than AI. */
+    private static boolean configure(String config, Game game) {
+        boolean mcts = false;
+        for (String command : config.split(";")) {
+            command = command.trim();
+            if (command.equalsIgnoreCase("mcts")) {
+                mcts = true;
+            } else if (command.equalsIgnoreCase("ai")) {
+                mcts = false;
+            } else if (!command.isEmpty()) {
+                game.execute(command);
+            }
+        }
+        return mcts;
+    }
+
+    /** Return the difference in Elo ratings that gives a player the
+     *  expected score SCORE (infinite if SCORE is 0 or 1). */
+    static double elo(double score) {
+        if (score <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        } else if (score >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -ELO_SCALE * Math.log10(1 / score - 1);
+    }
+
+    /** Return the expected score of a player whose Elo rating exceeds
+     *  the opponent's by ELO. */
+    static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / ELO_SCALE));
+    }
+
+    /** Return the log-likelihood ratio of the hypothesis that a player
+     *  who has won WINS games and lost LOSSES is ELO1 points stronger
+     *  than the opponent to the hypothesis that it is ELO0 points
+     *  stronger. */
+    static double llr(int wins, int losses, double elo0, double elo1) {
+        double p0 = expectedScore(elo0), p1 = expectedScore(elo1);
+        return wins * Math.log(p1 / p0)
+            + losses * Math.log((1 - p1) / (1 - p0));
+    }
+
+    /** Probability of accepting either hypothesis of the SPRT when the
+     *  other is true. */
+    static final double SPRT_ERROR = 0.05;
+    /** The SPRT accepts the hypothesis ELO0 when the log-likelihood ratio
+     *  falls to LOWER_BOUND, and ELO1 when it rises to UPPER_BOUND. */
+    static final double
+        LOWER_BOUND = Math.log(SPRT_ERROR / (1 - SPRT_ERROR)),
+        UPPER_BOUND = Math.log((1 - SPRT_ERROR) / SPRT_ERROR);
+
+    /** Elo points by which one player's rating must exceed another's for
+     *  its odds of winning to be 10 to 1. */
+    private static final double ELO_SCALE = 400;
+    /** Number of standard deviations on either side of the mean enclosing
+     *  95% of a normal distribution. */
+    private static final double Z_95 = 1.96;
+    /** Percentage of a whole. */
+    private static final double PERCENT = 100.0;
+
+    /** Greatest number of games to play. */
+    private final int _games;
+    /** Number of games played at once. */
+    private final int _threads;
+    /** The configurations of the two engines. */
+    private final String[] _configs;
+    /** Number of random moves at the start of each game. */
+    private final int _openingPlies;
+    /** Seed for the random openings. */
+    private final long _seed;
+    /** The differences in strength between which the SPRT decides. */
+    private final double _elo0, _elo1;
+    /** Tablebase consulted by the engines, or null. */
+    private Tablebase _tablebase;
+    /** Opening book consulted by the engines, or null. */
+    private OpeningBook _book;
+    /** Number of games started. */
+    private final AtomicInteger _started = new AtomicInteger();
+    /** Number of games won and lost by engine 1. */
+    private int _wins, _losses;
+    /** True once the SPRT has accepted a hypothesis. */
+    private volatile boolean _decided;
+}
@@ -0,0 +1,33 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the statistics used by Match.
+ *  @author Mariel Aquino
+ */
+public class MatchTest {
+
+    private static final double EPSILON = 1e-6;
+
+    @Test
+    public void testElo() {
+        assertEquals(0.0, Match.elo(0.5), EPSILON);
+        assertEquals(400 * Math.log10(3), Match.elo(0.75), EPSILON);
+        assertEquals(-Match.elo(0.75), Match.elo(0.25), EPSILON);
+        assertEquals(0.75, Match.expectedScore(Match.elo(0.75)), EPSILON);
+        assertEquals(Double.POSITIVE_INFINITY, Match.elo(1.0), 0);
+        assertEquals(Double.NEGATIVE_INFINITY, Match.elo(0.0), 0);
+    }
+
+    @Test
+    public void testLLR() {
+        assertEquals(0.0, Match.llr(0, 0, 0, 20), EPSILON);
+        assertTrue(Match.llr(60, 40, 0, 20) > 0);
+        assertTrue(Match.llr(40, 60, 0, 20) < 0);
+        assertTrue(Match.llr(300, 200, 0, 20) > Match.UPPER_BOUND);
+        assertTrue(Match.llr(200, 300, 0, 20) < Match.LOWER_BOUND);
+        assertEquals(-Match.llr(7, 3, 0, 20), Match.llr(7, 3, 20, 0),
+                     EPSILON);
+    }
+}
@@ -2,8 +2,7 @@ package qirkat;
 
 import static java.lang.Math.abs;
 import java.util.Formatter;
-import java.util.HashMap;
-import java.util.function.Function;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
@@ -27,6 +26,29 @@ class Move {
         STEP_R = 5,
         INDEX_ORIGIN = -('a' * STEP_C + '1' * STEP_R);
 
+    /** Number of directions in which a piece may move. */
+    static final int NUM_DIRECTIONS = 8;
+
+    /** Column change for each direction, in the order left, up, right,
+     *  down, up-right, up-left, down-right, down-left. */
+    static final int[] DCOL = { -1, 0, 1, 0, 1, -1, 1, -1 };
+
+    /** Row change for each direction. */
+    static final int[] DROW = { 0, 1, 0, -1, 1, 1, -1, -1 };
+
+    /** Change in linearized index for each direction. */
+    static final int[] DELTA = new int[NUM_DIRECTIONS];
+
+    static {
+        for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+            DELTA[d] = DCOL[d] * STEP_C + DROW[d] * STEP_R;
+        }
+    }
+
+    /** The largest number of jumps in a single capture sequence (one per
+     *  piece that a player starts with). */
+    static final int MAX_JUMPS = (SIDE * SIDE - 1) / 2;
+
     /** Pattern for valid move input. */
     private static final Pattern MOVE_PATTERN =
         Pattern.compile("(?:.*-)?([a-e])([1-5])-([a-e])([1-5])$");
@@ -39,58 +61,75 @@ class Move {
      * one. Moves themselves are immutable, and for any possible move,
      * there is exactly one object of type Move. */
 
-    /* To avoid creating Move objects that are not needed, we maintain a
-     * a static variable, _staged containing a Move object.  The move
-     * factory methods then sets the fields of this object before looking to
-     * to see if there is already a Move object with the same parameters.
-     * If there is, the move methods will simply return it, thus allowing
-     * _staged to be reused on the next call without having to create a
-     * new Move object.  Otherwise, we use the _staged object itself as the
-     * new Move, and set the variable to null so that we create a new
-     * Move on the next call to move. There is a drawback: since there
-     * is at most one _staged object at any time, at most one call to move
-     * may execute simultaneously.  Otherwise, two the methods may attempt
-     * to use the same Move object for two different Moves, which clearly
-     * will not work.  Therefore, we indicate in the comments that a number
-     * of the operations are not "thread safe". Fortunately, you'll not run
-     * into this problem as long as you don't do anything fancy (such as
-     * trying to make your AI a parallel program).
-     */
-
-    /** The move constructor, made private to prevent its use except in
-     *  this class. */
-    private Move() {
-
+    /* Every single step or jump (including the vestigial moves) is
+     * created once, when this class is initialized, and kept in the
+     * immutable table SINGLES, so that the factory need only index it.
+     * A multi-jump is interned in the _extensions map of its first jump,
+     * keyed by the (already interned) remainder of the jump.  These are
+     * ConcurrentHashMaps, whose lookups take no locks, and since the
+     * fields of a Move are final, the factory may be called freely from
+     * any number of threads. */
+
+    /** The move from COL0 ROW0 to COL1 ROW1 followed by NEXTJUMP, made
+     *  private to prevent its use except in this class. */
+    private Move(char col0, char row0, char col1, char row1,
+                 Move nextJump) {
+        assert col0 >= 'a' && row0 >= '1' && col1 >= 'a' && row1 >= '1'
+            && col0 <= 'e' && row0 <= '5' && col1 <= 'e' &&  row1 <= '5';
+        _col0 = col0;
+        _row0 = row0;
+        _col1 = col1;
+        _row1 = row1;
+        _fromIndex = (byte) index(col0, row0);
+        _toIndex = (byte) index(col1, row1);
+        _isJump = abs(col0 - col1) > 1 || abs(row0 - row1) > 1;
+        _nextJump = nextJump;
+        _extensions = _isJump && nextJump == null
+            ? new ConcurrentHashMap<>() : null;
+        assert (_isJump
+                && (nextJump == null
+                    || (nextJump.isJump()
+                        && col1 == nextJump.col0()
+                        && row1 == nextJump.row0())))
+            || (!_isJump && nextJump == null);
     }
 
     /** A factory method that returns a Move from COL0 ROW0 to COL1 ROW1,
      *  followed by NEXTJUMP, if this move is a jump. Assumes the column
      *  and row designations are valid and that NEXTJUMP is null for a
-     *  non-capturing move.  Not thread-safe. */
+     *  non-capturing move. */
     static Move move(char col0, char row0, char col1, char row1,
                      Move nextJump) {
-        if (_staged == null) {
-            _staged = new Move();
+        assert validSquare(col0, row0) && validSquare(col1, row1);
+        Move first = SINGLES[index(col0, row0)][index(col1, row1)];
+        if (nextJump == null) {
+            return first;
         }
-        _staged.set(col0, row0, col1, row1, nextJump);
-        if (_staged.isJump() && nextJump != null && !nextJump.isJump()) {
-            throw new IllegalArgumentException("bad jump");
-        } else if (!_staged.isJump() && nextJump != null) {
+        if (!first.isJump() || !nextJump.isJump()) {
             throw new IllegalArgumentException("bad jump");
         }
-        Move result = _internedMoves.computeIfAbsent(_staged, IDENTITY);
-        if (result == _staged) {
-            _staged = null;
+        Move result = first._extensions.get(nextJump);
+        if (result == null) {
+            Move fresh = new Move(col0, row0, col1, row1, nextJump);
+            result = first._extensions.putIfAbsent(nextJump, fresh);
+            if (result == null) {
+                result = fresh;
+            }
         }
         return result;
     }
 
-    /** Return a single move or jump from (COL0, ROW0) to (COL1, ROW1).
-     *  Not thread-safe. */
+    /** Return a single move or jump from (COL0, ROW0) to (COL1, ROW1). */
     static Move move(char col0, char row0, char col1, char row1) {
         return move(col0, row0, col1, row1, null);
     }
 
+    /** Return the single move or jump from linearized index FROM to
+     *  linearized index TO. */
+    static Move move(int from, int to) {
+        return SINGLES[from][to];
+    }
+
     /** Return a vestigial Move consisting only of starting square
      *  COL0 ROW0. */
     static Move move(char col0, char row0) {
@@ -121,6 +160,137 @@ class Move {
 
     }
 
+    /* The move generator and the AI do not traffic in Move objects, but in
+     * moves packed into longs, which need no interning and may be stored
+     * in primitive arrays (see MoveList).  A packed move has the form
+     *     bits 0-4:   the linearized index of the starting square;
+     *     bit 5:      set iff the move is a capture;
+     *     bits 6-9:   the number of legs (single steps or jumps) it has;
+     *     bits 10-:   the direction of each leg, 3 bits apiece, starting
+     *                 with the first leg in the lowest bits,
+     * where directions are numbered as for DCOL and DROW.  No packed move
+     * is 0, which therefore serves as NO_MOVE. */
+
+    /** A packed value that denotes no move. */
+    static final long NO_MOVE = 0;
+
+    /** Mask for the starting square of a packed move. */
+    private static final int FROM_MASK = (1 << 5) - 1;
+
+    /** Bit of a packed move that is set for captures. */
+    private static final int JUMP_BIT = 1 << 5;
+
+    /** Position and mask of the leg count of a packed move. */
+    private static final int
+        LEGS_SHIFT = 6,
+        LEGS_MASK = (1 << 4) - 1;
+
+    /** Position of the first leg's direction in a packed move, and the
+     *  number of bits in each direction. */
+    private static final int
+        DIRS_SHIFT = 10,
+        DIR_BITS = 3;
+
+    /** Return the packed non-capturing move from linearized index FROM in
+     *  direction DIR. */
+    static long packedStep(int from, int dir) {
+        return from | (1 << LEGS_SHIFT) | (dir << DIRS_SHIFT);
+    }
+
+    /** Return a packed capture of no legs starting at linearized index
+     *  FROM, to be extended by extendJump. */
+    static long packedJump(int from) {
+        return from | JUMP_BIT;
+    }
+
+    /** Return the packed capture JUMP extended by a jump in direction
+     *  DIR. */
+    static long extendJump(long jump, int dir) {
+        int legs = packedLegs(jump);
+        assert legs < MAX_JUMPS;
+        return jump + (1 << LEGS_SHIFT)
+            + ((long) dir << (DIRS_SHIFT + legs * DIR_BITS));
+    }
+
+    /** Return the starting square of packed move MOV. */
+    static int packedFrom(long mov) {
+        return (int) mov & FROM_MASK;
+    }
+
+    /** Return true iff packed move MOV is a capture. */
+    static boolean packedIsJump(long mov) {
+        return (mov & JUMP_BIT) != 0;
+    }
+
+    /** Return the number of legs in packed move MOV. */
+    static int packedLegs(long mov) {
+        return (int) (mov >>> LEGS_SHIFT) & LEGS_MASK;
+    }
+
+    /** Return the direction of leg number I (numbering from 0) of packed
+     *  move MOV. */
+    static int packedDirection(long mov, int i) {
+        return (int) (mov >>> (DIRS_SHIFT + i * DIR_BITS))
+            & ((1 << DIR_BITS) - 1);
+    }
+
+    /** Return the final square of packed move MOV. */
+    static int packedTo(long mov) {
+        int k = packedFrom(mov), stride = packedIsJump(mov) ? 2 : 1;
+        for (int i = packedLegs(mov) - 1; i >= 0; i -= 1) {
+            k += stride * DELTA[packedDirection(mov, i)];
+        }
+        return k;
+    }
+
+    /** Return the packed form of MOV, which must consist of steps or jumps
+     *  along the lines of the board. */
+    static long pack(Move mov) {
+        long result = mov.isJump() ? packedJump(mov.fromIndex()) : 0;
+        for (Move m = mov; m != null; m = m.jumpTail()) {
+            int stride = m.isJump() ? 2 : 1;
+            int dc = m.col1() - m.col0(), dr = m.row1() - m.row0();
+            int dir = direction(dc / stride, dr / stride);
+            if (dir < 0 || dc % stride != 0 || dr % stride != 0) {
+                throw new IllegalArgumentException("move not along a line");
+            }
+            if (m.isJump()) {
+                result = extendJump(result, dir);
+            } else {
+                result = packedStep(m.fromIndex(), dir);
+            }
+        }
+        return result;
+    }
+
+    /** Return the Move denoted by packed move MOV. */
+    static Move unpack(long mov) {
+        int legs = packedLegs(mov), stride = packedIsJump(mov) ? 2 : 1;
+        int[] squares = new int[legs + 1];
+        squares[0] = packedFrom(mov);
+        for (int i = 0; i < legs; i += 1) {
+            squares[i + 1] =
+                squares[i] + stride * DELTA[packedDirection(mov, i)];
+        }
+        Move result = null;
+        for (int i = legs - 1; i >= 0; i -= 1) {
+            result = move(col(squares[i]), row(squares[i]),
+                          col(squares[i + 1]), row(squares[i + 1]), result);
+        }
+        return result;
+    }
+
+    /** Return the direction whose column and row changes are DC and DR,
+     *  or -1 if there is none. */
+    static int direction(int dc, int dr) {
+        for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+            if (DCOL[d] == dc && DROW[d] == dr) {
+                return d;
+            }
+        }
+        return -1;
+    }
+
     /** Return true iff (C, R) is a valid square designation. */
     static boolean validSquare(char c, char r) {
         return 'a' <= c && c <= 'e' && '1' <= r && r <= '5';
@@ -305,51 +475,37 @@ class Move {
 
     }
 
-    /** Set me to COL0 ROW0 - COL1 ROW1 - NEXTJUMP. */
-    private void set(char col0, char row0, char col1, char row1,
-                     Move nextJump) {
-        assert col0 >= 'a' && row0 >= '1' && col1 >= 'a' && row1 >= '1'
-            && col0 <= 'e' && row0 <= '5' && col1 <= 'e' &&  row1 <= '5';
-        _col0 = col0;
-        _row0 = row0;
-        _col1 = col1;
-        _row1 = row1;
-        _fromIndex = (byte) index(col0, row0);
-        _toIndex = (byte) index(col1, row1);
-        _isJump = abs(col0 - col1) > 1 || abs(row0 - row1) > 1;
-        _nextJump = nextJump;
-        assert (_isJump
-                && (nextJump == null
-                    || (nextJump.isJump()
-                        && col1 == nextJump.col0()
-                        && row1 == nextJump.row0())))
-            || (!_isJump && nextJump == null);
-    }
-
     /** Linearized indices. */
-    private byte _fromIndex, _toIndex;
+    private final byte _fromIndex, _toIndex;
 
     /** True iff move is a jump. */
-    private boolean _isJump;
+    private final boolean _isJump;
 
     /** From and to squares, or 0s if a pass. */
-    private char _col0, _row0, _col1, _row1;
+    private final char _col0, _row0, _col1, _row1;
 
     /** For a jump, the Move representing the jumps following the
      *  initial jump. */
-    private Move _nextJump;
+    private final Move _nextJump;
 
     /* Used for the Move factory. */
 
-    /** Holds the next Move object to be added to _internedMoves.
-     *  The factory method move tentatively fills it in, and then returns
-     *  it if it is unique (resetting _staged to null). */
-    private static Move _staged;
+    /** For a single jump, the multi-jumps that begin with it, indexed by
+     *  the rest of the jump.  Null for other moves. */
+    private final ConcurrentHashMap<Move, Move> _extensions;
 
-    /** The set of all distinct moves generated so far. */
-    private static HashMap<Move, Move> _internedMoves = new HashMap<>();
+    /** SINGLES[j][k] is the single move or jump from linearized index j
+     *  to k. */
+    private static final Move[][] SINGLES =
+        new Move[MAX_INDEX + 1][MAX_INDEX + 1];
 
-    /** The identity function on Moves. */
-    static final Function<Move, Move> IDENTITY = k -> k;
+    static {
+        for (int j = 0; j <= MAX_INDEX; j += 1) {
+            for (int k = 0; k <= MAX_INDEX; k += 1) {
+                SINGLES[j][k] = new Move(col(j), row(j), col(k), row(k),
+                                         null);
+            }
+        }
+    }
 
 }
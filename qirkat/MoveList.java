@@ -0,0 +1,113 @@
+package qirkat;
+
+import java.util.Arrays;
+
+/** A growable list of moves in the packed form described in Move.
+ *  Unlike an ArrayList<Move>, it stores its moves in a primitive array,
+ *  so that adding and reading moves does no allocation once the list
+ *  has grown to its working size.
+ *  @author Mariel Aquino
+ */
+class MoveList {
+
+    /** An empty list with room for a typical number of moves. */
+    MoveList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /** An empty list with room for CAPACITY moves before it must grow. */
+    MoveList(int capacity) {
+        _moves = new long[Math.max(1, capacity)];
+    }
+
+    /** Return the number of moves in me. */
+    int size() {
+        return _size;
+    }
+
+    /** Return true iff I contain no moves. */
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /** Return move #K, numbering from 0. */
+    long get(int k) {
+        assert 0 <= k && k < _size;
+        return _moves[k];
+    }
+
+    /** Replace move #K with MOV. */
+    void set(int k, long mov) {
+        assert 0 <= k && k < _size;
+        _moves[k] = mov;
+    }
+
+    /** Exchange moves #J and #K. */
+    void swap(int j, int k) {
+        long tmp = _moves[j];
+        _moves[j] = _moves[k];
+        _moves[k] = tmp;
+    }
+
+    /** Return true iff I contain MOV. */
+    boolean contains(long mov) {
+        return indexOf(mov) >= 0;
+    }
+
+    /** Return the index of the first occurrence of MOV in me, or -1 if
+     *  there is none. */
+    int indexOf(long mov) {
+        for (int k = 0; k < _size; k += 1) {
+            if (_moves[k] == mov) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /** Add MOV to the end of me. */
+    void add(long mov) {
+        if (_size == _moves.length) {
+            _moves = Arrays.copyOf(_moves, 2 * _size);
+        }
+        _moves[_size] = mov;
+        _size += 1;
+    }
+
+    /** Add all the moves in MOVES to the end of me. */
+    void addAll(MoveList moves) {
+        if (_size + moves._size > _moves.length) {
+            _moves = Arrays.copyOf(_moves,
+                                   Math.max(2 * _moves.length,
+                                            _size + moves._size));
+        }
+        System.arraycopy(moves._moves, 0, _moves, _size, moves._size);
+        _size += moves._size;
+    }
+
+    /** Remove all my moves. */
+    void clear() {
+        _size = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("[");
+        for (int k = 0; k < _size; k += 1) {
+            if (k > 0) {
+                out.append(", ");
+            }
+            out.append(Move.unpack(_moves[k]));
+        }
+        return out.append("]").toString();
+    }
+
+    /** Number of moves a list has room for by default. */
+    private static final int DEFAULT_CAPACITY = 32;
+
+    /** The moves I contain, in elements [0 .. _size-1]. */
+    private long[] _moves;
+
+    /** Number of moves I contain. */
+    private int _size;
+}
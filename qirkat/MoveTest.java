@@ -73,5 +73,69 @@ public class MoveTest {
 
     }
 
+    @Test
+    public void testPack() {
+        for (String str : new String[] { "a3-b3", "c3-b4", "e5-e4",
+                                         "a3-a5", "a3-a5-c3-e1",
+                                         "c3-a1-c1-c3" }) {
+            Move m = parseMove(str);
+            long packed = pack(m);
+            assertEquals(m.isJump(), packedIsJump(packed));
+            assertEquals(m.fromIndex(), packedFrom(packed));
+            assertSame(m, unpack(packed));
+        }
+        long jump = pack(parseMove("a3-a5-c3-e1"));
+        assertEquals(3, packedLegs(jump));
+        assertEquals(index('e', '1'), packedTo(jump));
+        assertNotEquals(NO_MOVE, pack(parseMove("a1-b2")));
+    }
+
+    @Test
+    public void testMoveList() {
+        MoveList list = new MoveList(1);
+        for (int k = 0; k < 100; k += 1) {
+            list.add(packedStep(k % 20, k % NUM_DIRECTIONS));
+        }
+        assertEquals(100, list.size());
+        assertEquals(packedStep(3, 3), list.get(3));
+        list.swap(0, 3);
+        assertEquals(packedStep(0, 0), list.get(3));
+        assertEquals(3, list.indexOf(packedStep(0, 0)));
+        MoveList other = new MoveList();
+        other.addAll(list);
+        other.addAll(list);
+        assertEquals(200, other.size());
+        other.clear();
+        assertTrue(other.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentInterning() throws InterruptedException {
+        final int nThreads = 4;
+        final String[] jumps = { "a1-c1-e1-e3-c3-a3-a5", "e1-c3-a5-c5",
+                                 "b2-b4-d4-d2-b2", "c1-c3-e3" };
+        final Move[][] found = new Move[nThreads][jumps.length];
+        Thread[] threads = new Thread[nThreads];
+        for (int t = 0; t < nThreads; t += 1) {
+            final int me = t;
+            threads[t] = new Thread(() -> {
+                for (int rep = 0; rep < 1000; rep += 1) {
+                    for (int i = 0; i < jumps.length; i += 1) {
+                        found[me][i] = parseMove(jumps[i]);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int t = 1; t < nThreads; t += 1) {
+            for (int i = 0; i < jumps.length; i += 1) {
+                assertSame(found[0][i], found[t][i]);
+            }
+        }
+        assertSame(move('a', '1', 'b', '2'), move(0, index('b', '2')));
+    }
 
 }
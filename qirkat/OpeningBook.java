@@ -0,0 +1,150 @@
+package qirkat;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+import static qirkat.PieceColor.*;
+
+/** An opening book: the moves to play in the positions that may arise
+ *  early in a game, found in advance by long searches, so that an AI
+ *  need not search them during play.
+ *
+ *  The book is a table of entries, each consisting of the Zobrist key of
+ *  a position (see Board.key) and the move (packed) to make in it,
+ *  sorted by key so that a move may be found by binary search.  A book
+ *  may be written to a file (a short header followed by the entries) by
+ *  write, and read back (mapped into memory rather than copied) by load.
+ *  @author Mariel Aquino
+ */
+class OpeningBook {
+
+    /** Return a book of the moves that an AI in GAME finds (with GAME's
+     *  settings of time and threads) for each position that can arise
+     *  from the initial one in at most PLIES moves. */
+    static OpeningBook build(Game game, int plies) {
+        TreeMap<Long, Long> moves = new TreeMap<>();
+        build(new Board().detachedCopy(), plies, new AI(game, WHITE),
+              moves, new HashMap<>());
+        ByteBuffer data = ByteBuffer.allocate(moves.size() * ENTRY_BYTES);
+        for (Long key : moves.keySet()) {
+            data.putLong(key).putLong(moves.get(key));
+        }
+        data.flip();
+        return new OpeningBook(data);
+    }
+
+    /** Add to MOVES the moves found by AI for the position on BOARD and
+     *  for each position that can arise from it in fewer than PLIES moves,
+     *  indexed by their Zobrist keys.  VISITED[k] is the greatest value of
+     *  PLIES with which the position with key K has already been
+     *  visited, so that positions reached by different orders of moves
+     *  are searched only once. */
+    private static void build(Board board, int plies, AI ai,
+                              TreeMap<Long, Long> moves,
+                              HashMap<Long, Integer> visited) {
+        long key = board.key();
+        if (plies == 0 || board.gameOver()
+            || visited.getOrDefault(key, 0) >= plies) {
+            return;
+        }
+        visited.put(key, plies);
+        if (!moves.containsKey(key)) {
+            moves.put(key, ai.search(board));
+        }
+        MoveList next = new MoveList();
+        board.getMoves(next);
+        for (int i = 0; i < next.size(); i += 1) {
+            board.makeMove(next.get(i));
+            build(board, plies - 1, ai, moves, visited);
+            board.undo();
+        }
+    }
+
+    /** Return the book in the file named FILENAME, as written by
+     *  write. */
+    static OpeningBook load(String fileName) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+             FileChannel channel = file.getChannel()) {
+            ByteBuffer data =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.limit() < HEADER_SIZE || data.getInt() != MAGIC
+                || data.getInt() != VERSION) {
+                throw new IOException("not a Qirkat opening book: "
+                                      + fileName);
+            }
+            int size = data.getInt();
+            if (size < 0
+                || data.limit() != HEADER_SIZE + (long) size * ENTRY_BYTES) {
+                throw new IOException("damaged opening book: " + fileName);
+            }
+            data.position(HEADER_SIZE);
+            return new OpeningBook(data.slice());
+        }
+    }
+
+    /** Write me to the file named FILENAME, in the form read by load. */
+    void write(String fileName) throws IOException {
+        try (FileChannel channel =
+             new FileOutputStream(fileName).getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(size()).putInt(0);
+            header.flip();
+            ByteBuffer data = _data.duplicate();
+            data.clear();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+
+    /** Return the number of positions for which I hold moves. */
+    int size() {
+        return _data.limit() / ENTRY_BYTES;
+    }
+
+    /** Return the move (packed) that I hold for the position with Zobrist
+     *  key KEY, or Move.NO_MOVE if there is none. */
+    long find(long key) {
+        int lo, hi;
+        lo = 0;
+        hi = size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long k = _data.getLong(mid * ENTRY_BYTES);
+            if (k < key) {
+                lo = mid + 1;
+            } else if (k > key) {
+                hi = mid - 1;
+            } else {
+                return _data.getLong(mid * ENTRY_BYTES + Long.BYTES);
+            }
+        }
+        return Move.NO_MOVE;
+    }
+
+    /** A book whose entries are in DATA. */
+    private OpeningBook(ByteBuffer data) {
+        _data = data;
+    }
+
+    /** Identifies an opening book file ("QKOB"). */
+    private static final int MAGIC = 0x514b4f42;
+    /** Version of the layout of opening book files. */
+    private static final int VERSION = 1;
+    /** Number of bytes in the header of an opening book file: MAGIC,
+     *  VERSION, the number of entries, and an unused word. */
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+    /** Number of bytes in an entry: a key followed by a packed move. */
+    private static final int ENTRY_BYTES = 2 * Long.BYTES;
+
+    /** The entries, in increasing order of key. */
+    private final ByteBuffer _data;
+}
@@ -31,6 +31,11 @@ abstract class Player {
      *  board.whoseMove() == myColor and that !board.gameOver(). */
     abstract Move myMove();
 
+    /** Stop any work I am doing in the background, once the game I am
+     *  playing in is over or abandoned. */
+    void endGame() {
+    }
+
     /** The game I am playing in. */
     private final Game _game;
     /** The color of my pieces. */
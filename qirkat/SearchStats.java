@@ -0,0 +1,184 @@
+package qirkat;
+
+import java.util.Formatter;
+
+/** Counts of the work done by one or more searches for moves, used to
+ *  judge how well the search is working.  Each thread of a search keeps
+ *  its own counts (so that counting needs no synchronization), which are
+ *  added together afterward.
+ *  @author Mariel Aquino
+ */
+class SearchStats {
+
+    /** Reset all counts to 0. */
+    void clear() {
+        _nodes = _quiescenceNodes = 0;
+        _cutoffs = _firstMoveCutoffs = 0;
+        _probes = _hits = 0;
+        _tablebaseHits = 0;
+        _nanos = 0;
+        _selDepth = 0;
+        _depths = _searches = 0;
+        _logBranching = 0.0;
+        _branchingSearches = 0;
+        _iterationStart = _lastIterationNodes = 0;
+    }
+
+    /** Count a visit to a position. */
+    void countNode() {
+        _nodes += 1;
+    }
+
+    /** Count a visit to a position in the quiescence search (in addition
+     *  to countNode). */
+    void countQuiescenceNode() {
+        _quiescenceNodes += 1;
+    }
+
+    /** Count a cutoff, which happened on the first move tried iff
+     *  FIRST. */
+    void countCutoff(boolean first) {
+        _cutoffs += 1;
+        if (first) {
+            _firstMoveCutoffs += 1;
+        }
+    }
+
+    /** Count a probe of the transposition table, which found an entry iff
+     *  HIT. */
+    void countProbe(boolean hit) {
+        _probes += 1;
+        if (hit) {
+            _hits += 1;
+        }
+    }
+
+    /** Count a position whose value was found in a tablebase. */
+    void countTablebaseHit() {
+        _tablebaseHits += 1;
+    }
+
+    /** Note that the search has reached PLY moves from the root. */
+    void reachPly(int ply) {
+        _selDepth = Math.max(_selDepth, ply);
+    }
+
+    /** Note that a main search has completed an iteration to DEPTH, and
+     *  update the effective branching factor: the ratio of the positions
+     *  visited by this iteration to those visited by the last.  The
+     *  ratio is ignored if the last iteration visited too few positions
+     *  for it to mean anything. */
+    void completeIteration(int depth) {
+        long nodes = _nodes - _iterationStart;
+        if (_lastIterationNodes >= MIN_ITERATION_NODES) {
+            _logBranching = Math.log((double) nodes / _lastIterationNodes);
+            _branchingSearches = 1;
+        }
+        _lastIterationNodes = nodes;
+        _iterationStart = _nodes;
+        _depths = depth;
+        _searches = 1;
+    }
+
+    /** Record that the search took NANOS nanoseconds. */
+    void setTime(long nanos) {
+        _nanos = nanos;
+    }
+
+    /** Add the counts in OTHER to mine. */
+    void add(SearchStats other) {
+        _nodes += other._nodes;
+        _quiescenceNodes += other._quiescenceNodes;
+        _cutoffs += other._cutoffs;
+        _firstMoveCutoffs += other._firstMoveCutoffs;
+        _probes += other._probes;
+        _hits += other._hits;
+        _tablebaseHits += other._tablebaseHits;
+        _nanos += other._nanos;
+        _selDepth = Math.max(_selDepth, other._selDepth);
+        _depths += other._depths;
+        _logBranching += other._logBranching;
+        _branchingSearches += other._branchingSearches;
+        _searches += other._searches;
+    }
+
+    /** Return the number of positions visited. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the effective branching factor: the geometric mean of
+     *  those of the main searches counted, or 0 if none has one.  (A
+     *  geometric mean, since one outlying ratio may otherwise swamp the
+     *  rest.) */
+    double branchingFactor() {
+        return _branchingSearches == 0 ? 0
+            : Math.exp(_logBranching / _branchingSearches);
+    }
+
+    /** Return the number of positions visited per second. */
+    long nodesPerSecond() {
+        return _nanos == 0 ? 0 : Math.round(_nodes * NANOS_PER_SECOND / _nanos);
+    }
+
+    @Override
+    public String toString() {
+        Formatter out = new Formatter();
+        int searches = Math.max(_searches, 1);
+        out.format("depth %.1f (max %d), %d nodes (%d%% quiescence), "
+                   + "%d nodes/s, EBF %.2f, %d cutoffs (%d%% on first "
+                   + "move), %d%% of %d hash probes hit, "
+                   + "%d tablebase hits",
+                   (double) _depths / searches, _selDepth, _nodes,
+                   percent(_quiescenceNodes, _nodes), nodesPerSecond(),
+                   branchingFactor(), _cutoffs,
+                   percent(_firstMoveCutoffs, _cutoffs),
+                   percent(_hits, _probes), _probes, _tablebaseHits);
+        return out.toString();
+    }
+
+    /** Return PART as a percentage of WHOLE (0 if WHOLE is 0). */
+    private static long percent(long part, long whole) {
+        return whole == 0 ? 0 : Math.round(PERCENT * part / whole);
+    }
+
+    /** Number of nanoseconds in a second. */
+    private static final double NANOS_PER_SECOND = 1e9;
+    /** Percentage of a whole. */
+    private static final double PERCENT = 100.0;
+    /** Fewest positions an iteration must visit for the ratio of the
+     *  positions visited by the next iteration to them to count toward
+     *  the effective branching factor. */
+    static final long MIN_ITERATION_NODES = 100;
+
+    /** Number of positions visited. */
+    private long _nodes;
+    /** Number of positions visited by quiescence searches. */
+    private long _quiescenceNodes;
+    /** Number of cutoffs, and of those caused by the first move tried. */
+    private long _cutoffs, _firstMoveCutoffs;
+    /** Number of probes of the transposition table, and of those that
+     *  found an entry. */
+    private long _probes, _hits;
+    /** Number of positions found in a tablebase. */
+    private long _tablebaseHits;
+    /** Total time taken, in nanoseconds. */
+    private long _nanos;
+    /** Greatest number of moves from the root reached. */
+    private int _selDepth;
+    /** Total depth of the last iterations completed by the main
+     *  searches counted. */
+    private int _depths;
+    /** Number of main searches counted. */
+    private int _searches;
+    /** Total of the logarithms of the effective branching factors of
+     *  the main searches counted that have one. */
+    private double _logBranching;
+    /** Number of main searches counted that have an effective branching
+     *  factor. */
+    private int _branchingSearches;
+    /** Value of _nodes at the start of the current iteration. */
+    private long _iterationStart;
+    /** Number of positions visited by the last completed iteration. */
+    private long _lastIterationNodes;
+}
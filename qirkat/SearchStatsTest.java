@@ -0,0 +1,38 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of SearchStats.
+ *  @author Mariel Aquino
+ */
+public class SearchStatsTest {
+
+    private static final double EPSILON = 1e-6;
+
+    /** Return the statistics of a search whose iterations visit NODES[i]
+     *  positions each. */
+    private SearchStats search(long... nodes) {
+        SearchStats stats = new SearchStats();
+        for (int i = 0; i < nodes.length; i += 1) {
+            for (long k = 0; k < nodes[i]; k += 1) {
+                stats.countNode();
+            }
+            stats.completeIteration(i + 1);
+        }
+        return stats;
+    }
+
+    @Test
+    public void testBranchingFactor() {
+        assertEquals(0.0, search(1000).branchingFactor(), EPSILON);
+        assertEquals(3.0, search(1, 100, 300).branchingFactor(), EPSILON);
+        assertEquals("ratio to a tiny iteration counted", 0.0,
+                     search(1, 5000).branchingFactor(), EPSILON);
+        SearchStats total = new SearchStats();
+        total.add(search(100, 200));
+        total.add(search(100, 800));
+        total.add(search(1, 9999));
+        assertEquals(4.0, total.branchingFactor(), EPSILON);
+    }
+}
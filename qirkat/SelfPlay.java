@@ -0,0 +1,137 @@
+package qirkat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static qirkat.PieceColor.*;
+
+/** Plays many games between AIs, several at once, without reading
+ *  commands or reporting moves, and reports how quickly they were played
+ *  and how they turned out.  Since the AIs are deterministic, each game
+ *  starts from an opening of a few random moves (see Match.opening),
+ *  the openings of a run being determined by a seed, so that the games
+ *  differ, and a run may be repeated.  Each game has its own Game,
+ *  Board, and players (and so its own transposition table), so that
+ *  games share nothing but the tablebase and opening book, which are
+ *  read-only.
+ *  @author Mariel Aquino
+ */
+class SelfPlay {
+
+    /** A run of GAMES games, THREADS of them at a time, in which each
+     *  player has MOVETIME milliseconds for each move.  Each game starts
+     *  with OPENINGPLIES random moves, chosen with random numbers
+     *  generated from SEED. */
+    SelfPlay(int games, int threads, int moveTime, int openingPlies,
+             long seed) {
+        _games = games;
+        _threads = Math.max(1, threads);
+        _moveTime = moveTime;
+        _openingPlies = openingPlies;
+        _seed = seed;
+    }
+
+    /** Let the AIs consult TABLEBASE (null for none). */
+    void setTablebase(Tablebase tablebase) {
+        _tablebase = tablebase;
+    }
+
+    /** Let the AIs consult BOOK (null for none). */
+    void setBook(OpeningBook book) {
+        _book = book;
+    }
+
+    /** Play all the games and report the results on the standard
+     *  output. */
+    void run() {
+        long start = System.nanoTime();
+        Thread[] workers = new Thread[_threads];
+        for (int i = 0; i < _threads; i += 1) {
+            workers[i] = new Thread(this::playGames);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException excp) {
+                    /* Keep waiting. */
+                }
+            }
+        }
+        double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+        int played = _whiteWins + _blackWins;
+        System.out.printf("Openings: %d random moves, seed %d%n",
+                          _openingPlies, _seed);
+        System.out.printf("Games: %d in %.3f s (%.2f games/s)%n", played,
+                          seconds, played / seconds);
+        if (played > 0) {
+            System.out.printf("Average length: %.1f plies%n",
+                              (double) _plies / played);
+            System.out.printf("White wins: %d (%.1f%%)%n", _whiteWins,
+                              PERCENT * _whiteWins / played);
+            System.out.printf("Black wins: %d (%.1f%%)%n", _blackWins,
+                              PERCENT * _blackWins / played);
+        }
+    }
+
+    /** Play games until all have been started. */
+    private void playGames() {
+        while (true) {
+            int started = _started.getAndIncrement();
+            if (started >= _games) {
+                return;
+            }
+            Board board = Match.opening(_openingPlies, _seed + started);
+            Game game = new Game(board, null, new SilentReporter());
+            game.setMoveTime(_moveTime);
+            game.setTablebase(_tablebase);
+            game.setBook(_book);
+            Player white = new AI(game, WHITE), black = new AI(game, BLACK);
+            int plies = 0;
+            while (!board.gameOver()) {
+                Player player = board.whoseMove() == WHITE ? white : black;
+                board.makeMove(player.myMove());
+                plies += 1;
+            }
+            white.endGame();
+            black.endGame();
+            record(board.whoseMove().opposite(), plies);
+        }
+    }
+
+    /** Record a game won by WINNER after PLIES moves. */
+    private synchronized void record(PieceColor winner, int plies) {
+        if (winner == WHITE) {
+            _whiteWins += 1;
+        } else {
+            _blackWins += 1;
+        }
+        _plies += plies;
+    }
+
+    /** Number of nanoseconds in a second. */
+    private static final double NANOS_PER_SECOND = 1e9;
+    /** Percentage of a whole. */
+    private static final double PERCENT = 100.0;
+
+    /** Number of games to play. */
+    private final int _games;
+    /** Number of games played at once. */
+    private final int _threads;
+    /** Milliseconds allowed for each move. */
+    private final int _moveTime;
+    /** Number of random moves at the start of each game. */
+    private final int _openingPlies;
+    /** Seed for the random openings. */
+    private final long _seed;
+    /** Tablebase consulted by the AIs, or null. */
+    private Tablebase _tablebase;
+    /** Opening book consulted by the AIs, or null. */
+    private OpeningBook _book;
+    /** Number of games started. */
+    private final AtomicInteger _started = new AtomicInteger();
+    /** Number of games won by each color. */
+    private int _whiteWins, _blackWins;
+    /** Total number of moves made in all games. */
+    private long _plies;
+}
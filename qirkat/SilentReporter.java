@@ -0,0 +1,21 @@
+package qirkat;
+
+/** A Reporter that discards all messages, for games played without an
+ *  audience (see SelfPlay).
+ *  @author Mariel Aquino
+ */
+class SilentReporter implements Reporter {
+
+    @Override
+    public void errMsg(String format, Object... args) {
+    }
+
+    @Override
+    public void outcomeMsg(String format, Object... args) {
+    }
+
+    @Override
+    public void moveMsg(String format, Object... args) {
+    }
+
+}
@@ -0,0 +1,305 @@
+package qirkat;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static qirkat.PieceColor.*;
+
+/** An endgame tablebase: the exact result, with perfect play, of every
+ *  position with at most maxPieces() pieces (of both colors together).
+ *
+ *  Qirkat cannot be drawn.  Non-capturing moves only advance pieces or
+ *  move them sideways in the one direction that their locks allow, and
+ *  captures remove pieces, so no position can recur, and every game ends
+ *  when the player to move has no moves and so loses.  Thus each entry
+ *  need only record the number of plies until that happens (the winner
+ *  hurrying and the loser delaying): the player to move wins iff that
+ *  number is odd.
+ *
+ *  The positions with K pieces are numbered by the rank of their set of
+ *  occupied squares among all K-element sets, then by the color and lock
+ *  state of each piece (six possibilities, taken in order of square),
+ *  and finally by the side to move.  Each entry is one byte, 0 for an
+ *  entry not yet solved and otherwise one more than the number of plies
+ *  to the end.  The entries for each K follow those for K - 1.
+ *
+ *  A tablebase is computed by generate, which solves each position by
+ *  searching its successors, remembering every result, so that each
+ *  position is solved only once.  Several threads may solve positions
+ *  at once: they may occasionally solve the same position twice, but
+ *  always store the same result.  A tablebase may be written to a file
+ *  with a short header by write, and read back (mapped into memory
+ *  rather than copied) by load.
+ *  @author Mariel Aquino
+ */
+class Tablebase {
+
+    /** Largest number of pieces for which positions may be tabulated. */
+    static final int MAX_PIECES = 5;
+    /** Largest number of plies to the end of a game that may be
+     *  recorded. */
+    static final int MAX_DISTANCE = Byte.MAX_VALUE - Byte.MIN_VALUE - 1;
+
+    /** Return a tablebase of all positions with at most MAXPIECES
+     *  pieces, computed with THREADS threads. */
+    static Tablebase generate(int maxPieces, int threads) {
+        Tablebase result =
+            new Tablebase(maxPieces, ByteBuffer.allocate(size(maxPieces)));
+        for (int k = 0; k <= maxPieces; k += 1) {
+            result.solveAll(k, Math.max(1, threads));
+        }
+        return result;
+    }
+
+    /** Return the tablebase in the file named FILENAME, as written by
+     *  write. */
+    static Tablebase load(String fileName) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+             FileChannel channel = file.getChannel()) {
+            ByteBuffer data =
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.limit() < HEADER_SIZE || data.getInt() != MAGIC
+                || data.getInt() != VERSION) {
+                throw new IOException("not a Qirkat tablebase: " + fileName);
+            }
+            int maxPieces = data.getInt();
+            if (maxPieces < 0 || maxPieces > MAX_PIECES
+                || data.limit() != HEADER_SIZE + size(maxPieces)) {
+                throw new IOException("damaged tablebase: " + fileName);
+            }
+            data.position(HEADER_SIZE);
+            return new Tablebase(maxPieces, data.slice());
+        }
+    }
+
+    /** Write me to the file named FILENAME, in the form read by load. */
+    void write(String fileName) throws IOException {
+        try (FileChannel channel =
+             new FileOutputStream(fileName).getChannel()) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(_maxPieces).putInt(0);
+            header.flip();
+            ByteBuffer data = _data.duplicate();
+            data.clear();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+
+    /** Return the largest number of pieces of the positions I hold. */
+    int maxPieces() {
+        return _maxPieces;
+    }
+
+    /** Return the number of plies until the end of the game from the
+     *  position on BOARD with perfect play, or -1 if I do not hold its
+     *  result.  The player to move wins iff the result is odd. */
+    int probe(Board board) {
+        if (board.pieceCount() > _maxPieces) {
+            return -1;
+        }
+        return Byte.toUnsignedInt(_data.get(index(board))) - 1;
+    }
+
+    /** A tablebase for positions with at most MAXPIECES pieces, whose
+     *  entries are in DATA. */
+    private Tablebase(int maxPieces, ByteBuffer data) {
+        if (maxPieces < 0 || maxPieces > MAX_PIECES) {
+            throw new IllegalArgumentException("bad number of pieces");
+        }
+        _maxPieces = maxPieces;
+        _data = data;
+    }
+
+    /** Solve all positions with K pieces, using THREADS threads, which
+     *  take the positions in turn. */
+    private void solveAll(int k, int threads) {
+        int first = size(k - 1), last = size(k);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t += 1) {
+            int start = first + t;
+            workers[t] = new Thread(() -> {
+                    Board board = new Board().detachedCopy();
+                    MoveList[] moves = new MoveList[MAX_DISTANCE + 1];
+                    for (int i = 0; i < moves.length; i += 1) {
+                        moves[i] = new MoveList();
+                    }
+                    for (int i = start; i < last; i += threads) {
+                        if (_data.get(i) == 0) {
+                            setPosition(board, k, i - first);
+                            solve(board, i, moves, 0);
+                        }
+                    }
+                });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException excp) {
+                    /* Keep waiting. */
+                }
+            }
+        }
+    }
+
+    /** Return and record the number of plies to the end of the game from
+     *  the position on BOARD, whose entry is _data[INDEX], using
+     *  MOVES[PLY] and beyond to hold the moves from it and its
+     *  successors.  The player to move chooses the quickest win if any
+     *  successor is lost for the opponent, and otherwise the slowest
+     *  loss. */
+    private int solve(Board board, int index, MoveList[] moves, int ply) {
+        int entry = Byte.toUnsignedInt(_data.get(index));
+        if (entry != 0) {
+            return entry - 1;
+        }
+        MoveList next = moves[ply];
+        next.clear();
+        board.getMoves(next);
+        int win = Integer.MAX_VALUE, loss = 0;
+        for (int i = 0; i < next.size(); i += 1) {
+            board.makeMove(next.get(i));
+            int plies = 1 + solve(board, index(board), moves, ply + 1);
+            board.undo();
+            if (plies % 2 == 1) {
+                win = Math.min(win, plies);
+            } else {
+                loss = Math.max(loss, plies);
+            }
+        }
+        int result = win != Integer.MAX_VALUE ? win : loss;
+        if (result > MAX_DISTANCE) {
+            throw new IllegalStateException("game too long to tabulate");
+        }
+        _data.put(index, (byte) (result + 1));
+        return result;
+    }
+
+    /** Return the number of positions with at most K pieces (0 if K is
+     *  negative). */
+    private static int size(int k) {
+        int size = 0;
+        for (int j = 0; j <= k; j += 1) {
+            size += count(j);
+        }
+        return size;
+    }
+
+    /** Return the number of positions with exactly K pieces. */
+    private static int count(int k) {
+        return BINOMIAL[Move.MAX_INDEX + 1][k] * STATE_POWERS[k]
+            * NUM_SIDES;
+    }
+
+    /** Return the index of the entry for the position on BOARD, which
+     *  has at most MAX_PIECES pieces. */
+    private static int index(Board board) {
+        int white = board.squares(WHITE),
+            occupied = white | board.squares(BLACK),
+            left = board.leftLocked(), right = board.rightLocked();
+        int k = Integer.bitCount(occupied);
+        int rank, states;
+        rank = states = 0;
+        for (int i = 1, rest = occupied; rest != 0; i += 1) {
+            int sq = Integer.numberOfTrailingZeros(rest);
+            int bit = 1 << sq;
+            rest &= ~bit;
+            rank += BINOMIAL[sq][i];
+            int state = (white & bit) != 0 ? 0 : NUM_LOCKS;
+            if ((left & bit) != 0) {
+                state += 1;
+            } else if ((right & bit) != 0) {
+                state += 2;
+            }
+            states = states * NUM_STATES + state;
+        }
+        int side = board.whoseMove() == WHITE ? 0 : 1;
+        return size(k - 1)
+            + (rank * STATE_POWERS[k] + states) * NUM_SIDES + side;
+    }
+
+    /** Set BOARD to the position with K pieces that is number POSITION
+     *  among those with K pieces (the inverse of index). */
+    private static void setPosition(Board board, int k, int position) {
+        PieceColor side = position % NUM_SIDES == 0 ? WHITE : BLACK;
+        position /= NUM_SIDES;
+        int states = position % STATE_POWERS[k],
+            rank = position / STATE_POWERS[k];
+        int white, black, left, right;
+        white = black = left = right = 0;
+        int sq = Move.MAX_INDEX;
+        for (int i = k; i > 0; i -= 1) {
+            while (BINOMIAL[sq][i] > rank) {
+                sq -= 1;
+            }
+            rank -= BINOMIAL[sq][i];
+            int bit = 1 << sq;
+            int state = states % NUM_STATES;
+            states /= NUM_STATES;
+            if (state < NUM_LOCKS) {
+                white |= bit;
+            } else {
+                black |= bit;
+            }
+            if (state % NUM_LOCKS == 1) {
+                left |= bit;
+            } else if (state % NUM_LOCKS == 2) {
+                right |= bit;
+            }
+            sq -= 1;
+        }
+        board.setPosition(white, black, left, right, side);
+    }
+
+    /** Identifies a tablebase file ("QKTB"). */
+    private static final int MAGIC = 0x514b5442;
+    /** Version of the layout of tablebase files. */
+    private static final int VERSION = 1;
+    /** Number of bytes in the header of a tablebase file: MAGIC, VERSION,
+     *  the largest number of pieces, and an unused word. */
+    private static final int HEADER_SIZE = 4 * Integer.BYTES;
+
+    /** Number of lock states of a piece: free to move either way, unable
+     *  to move left, or unable to move right. */
+    private static final int NUM_LOCKS = 3;
+    /** Number of states of an occupied square: a white piece in one of
+     *  its lock states (0 to NUM_LOCKS - 1), or a black one (NUM_LOCKS
+     *  plus its lock state). */
+    private static final int NUM_STATES = 2 * NUM_LOCKS;
+    /** Number of choices of the player to move. */
+    private static final int NUM_SIDES = 2;
+
+    /** BINOMIAL[n][k] is the number of K-element subsets of an N-element
+     *  set. */
+    private static final int[][] BINOMIAL =
+        new int[Move.MAX_INDEX + 2][MAX_PIECES + 1];
+    /** STATE_POWERS[k] is NUM_STATES to the power K. */
+    private static final int[] STATE_POWERS = new int[MAX_PIECES + 1];
+
+    static {
+        for (int n = 0; n < BINOMIAL.length; n += 1) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= MAX_PIECES && n > 0; k += 1) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+        STATE_POWERS[0] = 1;
+        for (int k = 1; k <= MAX_PIECES; k += 1) {
+            STATE_POWERS[k] = STATE_POWERS[k - 1] * NUM_STATES;
+        }
+    }
+
+    /** Largest number of pieces of the positions in _data. */
+    private final int _maxPieces;
+    /** The entries, as described in the class comment. */
+    private final ByteBuffer _data;
+}
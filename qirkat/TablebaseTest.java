@@ -0,0 +1,102 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static qirkat.PieceColor.*;
+
+/** Tests of the Tablebase class.
+ *  @author Mariel Aquino
+ */
+public class TablebaseTest {
+
+    /** A tablebase of positions with up to 3 pieces, shared by the
+     *  tests. */
+    private static final Tablebase TABLE = Tablebase.generate(3, 2);
+
+    @Test
+    public void testSimple() {
+        Board b = new Board();
+        b.setPosition(1 << Move.index('b', '2'), 1 << Move.index('b', '3'),
+                      0, 0, WHITE);
+        assertEquals(1, TABLE.probe(b));
+        b.setPosition(1 << Move.index('b', '2'), 1 << Move.index('b', '3'),
+                      0, 0, BLACK);
+        assertEquals(1, TABLE.probe(b));
+        b.setPosition(1 << Move.index('c', '3'), 0, 0, 0, BLACK);
+        assertEquals(0, TABLE.probe(b));
+        b.clear();
+        assertEquals(-1, TABLE.probe(b));
+    }
+
+    /** Check that the entries for positions with one white piece and up
+     *  to two black ones (with all lock states of the white piece) are
+     *  consistent with those of their successors. */
+    @Test
+    public void testConsistent() {
+        Board b = new Board();
+        int n = Move.MAX_INDEX + 1;
+        for (int w = 0; w < n; w += 1) {
+            for (int b1 = 0; b1 < n; b1 += 1) {
+                for (int b2 = b1; b2 < n; b2 += 1) {
+                    int white = 1 << w, black = (1 << b1) | (1 << b2);
+                    if ((white & black) != 0) {
+                        continue;
+                    }
+                    for (int lock = 0; lock < 3; lock += 1) {
+                        for (PieceColor side : new PieceColor[] {
+                                WHITE, BLACK }) {
+                            b.setPosition(white, black,
+                                          lock == 1 ? white : 0,
+                                          lock == 2 ? white : 0, side);
+                            checkConsistent(b);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /** Check that the entry for the position on B is the quickest win or
+     *  slowest loss among its successors. */
+    private void checkConsistent(Board b) {
+        int win = Integer.MAX_VALUE, loss = 0;
+        for (Move mov : b.getMoves()) {
+            b.makeMove(mov);
+            int plies = 1 + TABLE.probe(b);
+            b.undo();
+            assertTrue(plies > 0);
+            if (plies % 2 == 1) {
+                win = Math.min(win, plies);
+            } else {
+                loss = Math.max(loss, plies);
+            }
+        }
+        assertEquals(b.toString(),
+                     win == Integer.MAX_VALUE ? loss : win, TABLE.probe(b));
+    }
+
+    @Test
+    public void testWriteLoad() throws IOException {
+        File file = File.createTempFile("qirkat", ".tb");
+        file.deleteOnExit();
+        Tablebase small = Tablebase.generate(2, 1);
+        small.write(file.getPath());
+        Tablebase loaded = Tablebase.load(file.getPath());
+        assertEquals(2, loaded.maxPieces());
+        Board b = new Board();
+        int n = Move.MAX_INDEX + 1;
+        for (int w = 0; w < n; w += 1) {
+            for (int k = 0; k < n; k += 1) {
+                if (w != k) {
+                    b.setPosition(1 << w, 1 << k, 0, 1 << w, BLACK);
+                    assertEquals(TABLE.probe(b), loaded.probe(b));
+                }
+            }
+        }
+        file.delete();
+    }
+}
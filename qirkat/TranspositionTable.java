@@ -0,0 +1,182 @@
+package qirkat;
+
+import java.util.Arrays;
+
+/** A fixed-size table of the results of searching positions, indexed by
+ *  the positions' Zobrist keys (see Board.key), so that a search may
+ *  reuse the result of an earlier search of the same position reached by
+ *  a different order of moves.  Each entry records the depth searched,
+ *  the score found, whether that score is exact or only a bound, and the
+ *  best move found.
+ *
+ *  The entries are kept in a primitive array, one entry per slot, with
+ *  the slot for a key given by its low-order bits.  When two
+ *  positions compete for a slot, the one searched more deeply is kept,
+ *  unless the entry already there is left over from an earlier search
+ *  (as indicated by its age), in which case it is always replaced.
+ *
+ *  Several threads may search with the same table at once, without
+ *  locking.  Each entry consists of a data word (packing the score,
+ *  depth, bound type, and age), a move, and a check word holding the XOR
+ *  of the key with the other two.  A reader that sees parts of two
+ *  different stores to a slot will find that the check word does not
+ *  match, and treat the slot as empty.  Since all entries are in one
+ *  array, a search that runs while the table is resized sees either the
+ *  old table or the new one, never a mixture.
+ *  @author Mariel Aquino
+ */
+class TranspositionTable {
+
+    /** Bound type of a score that is the exact value of its position. */
+    static final int EXACT = 0;
+    /** Bound type of a score that is no greater than the true value. */
+    static final int LOWER = 1;
+    /** Bound type of a score that is no less than the true value. */
+    static final int UPPER = 2;
+
+    /** Index of the data word in an entry returned by find. */
+    static final int DATA = 0;
+    /** Index of the move in an entry returned by find. */
+    static final int MOVE = 1;
+    /** Number of elements in an entry returned by find. */
+    static final int ENTRY_SIZE = 2;
+
+    /** Size of the table, in megabytes, if not otherwise specified. */
+    static final int DEFAULT_MEGABYTES = 16;
+
+    /** A table of at most MEGABYTES megabytes. */
+    TranspositionTable(int megabytes) {
+        resize(megabytes);
+    }
+
+    /** A table of the default size. */
+    TranspositionTable() {
+        this(DEFAULT_MEGABYTES);
+    }
+
+    /** Discard my contents and make me occupy at most MEGABYTES megabytes
+     *  (but always hold at least one entry). */
+    void resize(int megabytes) {
+        long entries = ((long) megabytes << MEGABYTE_BITS) / ENTRY_BYTES;
+        int size = Integer.highestOneBit((int) Math.max(1,
+                       Math.min(entries, MAX_ENTRIES)));
+        _entries = new long[size * SLOT_SIZE];
+    }
+
+    /** Discard my contents. */
+    void clear() {
+        Arrays.fill(_entries, 0);
+    }
+
+    /** Return the number of entries I can hold. */
+    int capacity() {
+        return _entries.length / SLOT_SIZE;
+    }
+
+    /** Mark the start of a new search, so that entries stored by previous
+     *  searches are replaced in preference to those stored by this one. */
+    void newSearch() {
+        _age = (_age + 1) & AGE_MASK;
+    }
+
+    /** If I hold an entry for the position with Zobrist key KEY, copy its
+     *  data word and move into ENTRY[DATA] and ENTRY[MOVE] and return
+     *  true.  Otherwise, return false.  The data word may be decoded with
+     *  depth, score, and bound. */
+    boolean find(long key, long[] entry) {
+        long[] entries = _entries;
+        int slot = slot(key, entries);
+        long data = entries[slot + DATA_FIELD],
+            move = entries[slot + MOVE_FIELD];
+        if (data == 0 || (entries[slot] ^ data ^ move) != key) {
+            return false;
+        }
+        entry[DATA] = data;
+        entry[MOVE] = move;
+        return true;
+    }
+
+    /** Return the depth to which the position with data word DATA was
+     *  searched. */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    /** Return the score in data word DATA. */
+    static int score(long data) {
+        return (int) (data >> SCORE_SHIFT);
+    }
+
+    /** Return the bound type (EXACT, LOWER, or UPPER) of score(DATA). */
+    static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /** Record that the position with Zobrist key KEY, searched to DEPTH,
+     *  has score SCORE with bound type BOUND, and best move MOVE (packed,
+     *  or Move.NO_MOVE if unknown), unless the entry occupying its slot
+     *  is more valuable. */
+    void store(long key, int depth, int score, int bound, long move) {
+        long[] entries = _entries;
+        int slot = slot(key, entries);
+        long old = entries[slot + DATA_FIELD],
+            oldMove = entries[slot + MOVE_FIELD];
+        boolean same = (entries[slot] ^ old ^ oldMove) == key;
+        if (old != 0 && !same && (old & AGE_MASK) == _age
+            && depth(old) > depth) {
+            return;
+        }
+        if (move == Move.NO_MOVE && same) {
+            move = oldMove;
+        }
+        long data = ((long) score << SCORE_SHIFT) | VALID
+            | ((long) Math.min(depth, DEPTH_MASK) << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT) | _age;
+        entries[slot] = key ^ data ^ move;
+        entries[slot + DATA_FIELD] = data;
+        entries[slot + MOVE_FIELD] = move;
+    }
+
+    /** Return the index in ENTRIES of the slot for the position with
+     *  Zobrist key KEY. */
+    private static int slot(long key, long[] entries) {
+        return ((int) key & (entries.length / SLOT_SIZE - 1)) * SLOT_SIZE;
+    }
+
+    /** Log base 2 of the number of bytes in a megabyte. */
+    private static final int MEGABYTE_BITS = 20;
+    /** Number of elements of _entries in each slot: the check word,
+     *  followed by the data word and move at the offsets DATA_FIELD and
+     *  MOVE_FIELD. */
+    private static final int SLOT_SIZE = 3;
+    /** Offset of the data word within a slot. */
+    private static final int DATA_FIELD = 1;
+    /** Offset of the move within a slot. */
+    private static final int MOVE_FIELD = 2;
+    /** Number of bytes occupied by one entry. */
+    private static final int ENTRY_BYTES = SLOT_SIZE * Long.BYTES;
+    /** Largest number of entries in a table. */
+    private static final int MAX_ENTRIES = 1 << 28;
+
+    /** Layout of the data words: the age of the search that stored the
+     *  entry in the low bits, then the bound type, then the depth, then
+     *  a bit that is set in any entry in use, and finally the score in
+     *  the upper half. */
+    private static final int
+        AGE_MASK = (1 << 8) - 1,
+        BOUND_SHIFT = 8,
+        BOUND_MASK = 3,
+        DEPTH_SHIFT = 10,
+        DEPTH_MASK = (1 << 8) - 1,
+        SCORE_SHIFT = 32;
+    /** The bit that is set in any data word in use. */
+    private static final long VALID = 1L << 18;
+
+    /** The slots, each SLOT_SIZE elements long: the XOR of the key,
+     *  data word, and move of an entry, then its data word (laid out as
+     *  described for AGE_MASK, or 0 if the slot is empty), and then its
+     *  best move (packed).  The number of slots is a power of 2. */
+    private volatile long[] _entries;
+    /** Age of the current search. */
+    private int _age;
+}